@@ -3,13 +3,12 @@ package action;
 import logic.ConfigXmlLoader;
 import logic.LogicGraphPanel;
 import logic.LogicNode;
+import logic.LogicTreeModel;
 import logic.TreeHelper;
 import logic.LogicUiUtil;
 import logic.LogicValidator;
 
 import javax.swing.*;
-import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreePath;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -18,7 +17,7 @@ import java.util.*;
 public class AddNodeAction implements ActionListener {
     private final JFrame frame;
     private final JTree tree;
-    private final DefaultMutableTreeNode root;
+    private final LogicTreeModel treeModel;
     private final LogicNode[] logicRoot;
     private final int[] nodeIdCounter;
     private final ConfigXmlLoader[] config;
@@ -26,10 +25,10 @@ public class AddNodeAction implements ActionListener {
     private final Map<Integer, String> errorNodeMap;
     private final JLabel status;
 
-    public AddNodeAction(JFrame frame, JTree tree, DefaultMutableTreeNode root, LogicNode[] logicRoot, int[] nodeIdCounter, ConfigXmlLoader[] config, LogicGraphPanel graphPanel, JLabel status, Map<Integer, String> errorNodeMap) {
+    public AddNodeAction(JFrame frame, JTree tree, LogicTreeModel treeModel, LogicNode[] logicRoot, int[] nodeIdCounter, ConfigXmlLoader[] config, LogicGraphPanel graphPanel, JLabel status, Map<Integer, String> errorNodeMap) {
         this.frame = frame;
         this.tree = tree;
-        this.root = root;
+        this.treeModel = treeModel;
         this.logicRoot = logicRoot;
         this.nodeIdCounter = nodeIdCounter;
         this.config = config;
@@ -42,8 +41,7 @@ public class AddNodeAction implements ActionListener {
     public void actionPerformed(ActionEvent e) {
         TreePath path = tree.getSelectionPath();
         if (path==null || logicRoot[0]==null) return;
-        DefaultMutableTreeNode sel = (DefaultMutableTreeNode)path.getLastPathComponent();
-        LogicNode ln = TreeHelper.findNode(logicRoot[0], sel, root);
+        LogicNode ln = TreeHelper.findNode(path);
         if (ln==null) return;
         LogicNode.NodeType[] types = Arrays.stream(LogicNode.NodeType.values()).filter(t -> t != LogicNode.NodeType.UNKNOWN).toArray(LogicNode.NodeType[]::new);
         LogicNode.NodeType type = (LogicNode.NodeType)JOptionPane.showInputDialog(frame, "选择节点类型:", "类型", JOptionPane.PLAIN_MESSAGE, null, types, types[0]);
@@ -111,18 +109,12 @@ public class AddNodeAction implements ActionListener {
         newNode.filter.putAll(filter);
         newNode.filterParamList.addAll(filterParamList);
         // 保存快照以支持撤销（包括 UI 状态）
-        logic.UndoManager.saveSnapshot(logicRoot[0], tree, root);
-    ln.children.add(newNode);
-    // 保存当前展开 id 列表与选中 id，以便重建后准确恢复 UI 状态
-    java.util.List<Integer> expandedIds = logic.SwingTreeUtil.collectExpandedIds(tree, root);
-    Integer selectedId = logic.SwingTreeUtil.findSelectedNodeId(tree);
-    logic.SwingTreeUtil.buildSwingTree(logicRoot[0], root);
-    ((DefaultTreeModel)tree.getModel()).reload();
-    logic.SwingTreeUtil.applyUiState(tree, root, expandedIds, selectedId);
-        graphPanel.setLogicRoot(logicRoot[0]);
-        // 实时校验
-        // 需传入全局errorNodeMap
-        LogicValidator.validateAllNodes(logicRoot[0]);
+        logic.UndoManager.saveSnapshot(logicRoot[0], tree);
+        // 只通知插入的节点，树的展开与选中状态保持不变
+        TreePath newPath = treeModel.addNode(path, newNode);
+        graphPanel.nodesChanged();
+        // 实时校验：只重新校验新节点所在的作用域
+        LogicValidator.validateChanged(newPath);
         LogicUiUtil.updateErrorStatusBar(logicRoot[0], status, errorNodeMap);
     }
 }
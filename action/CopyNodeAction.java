@@ -2,13 +2,13 @@
 package action;
 import logic.LogicGraphPanel;
 import logic.LogicNode;
+import logic.LogicTreeModel;
+import logic.LogicTreeWalker;
 import logic.TreeHelper;
 import logic.LogicUiUtil;
 import logic.LogicValidator;
 
 import javax.swing.*;
-import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreePath;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -17,17 +17,17 @@ import java.util.*;
 public class CopyNodeAction implements ActionListener {
     private final JFrame frame;
     private final JTree tree;
-    private final DefaultMutableTreeNode root;
+    private final LogicTreeModel treeModel;
     private final LogicNode[] logicRoot;
     private final LogicGraphPanel graphPanel;
     private final Map<Integer, String> errorNodeMap;
     private final JLabel status;
     private final int[] nodeIdCounter;
 
-    public CopyNodeAction(JFrame frame, JTree tree, DefaultMutableTreeNode root, LogicNode[] logicRoot, int[] nodeIdCounter, LogicGraphPanel graphPanel, JLabel status, Map<Integer, String> errorNodeMap) {
+    public CopyNodeAction(JFrame frame, JTree tree, LogicTreeModel treeModel, LogicNode[] logicRoot, int[] nodeIdCounter, LogicGraphPanel graphPanel, JLabel status, Map<Integer, String> errorNodeMap) {
         this.frame = frame;
         this.tree = tree;
-        this.root = root;
+        this.treeModel = treeModel;
         this.logicRoot = logicRoot;
         this.nodeIdCounter = nodeIdCounter;
         this.graphPanel = graphPanel;
@@ -42,17 +42,13 @@ public class CopyNodeAction implements ActionListener {
             JOptionPane.showMessageDialog(frame, "请先选中要复制的节点", "提示", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
-        DefaultMutableTreeNode sel = (DefaultMutableTreeNode)selectedPath.getLastPathComponent();
-        LogicNode toCopy = TreeHelper.findNode(logicRoot[0], sel, root);
+        LogicNode toCopy = TreeHelper.findNode(selectedPath);
         if (toCopy == null) return;
         java.util.List<LogicNode> allNodes = new java.util.ArrayList<>();
-        java.util.function.BiConsumer<LogicNode, DefaultMutableTreeNode> collect = new java.util.function.BiConsumer<LogicNode, DefaultMutableTreeNode>() {
-            public void accept(LogicNode n, DefaultMutableTreeNode t) {
-                allNodes.add(n);
-                for (int i=0;i<n.children.size();i++) accept(n.children.get(i), (DefaultMutableTreeNode)t.getChildAt(i));
-            }
-        };
-        collect.accept(logicRoot[0], root);
+        LogicTreeWalker.walk(logicRoot[0], (n, depth) -> {
+            allNodes.add(n);
+            return LogicTreeWalker.Action.CONTINUE;
+        });
         LogicNode parent = (LogicNode)JOptionPane.showInputDialog(
             frame,
             "选择粘贴目标父节点:",
@@ -65,31 +61,32 @@ public class CopyNodeAction implements ActionListener {
         if (parent == null) return;
         LogicNode copy = deepCopyNode(toCopy);
     // 保存快照以支持撤销（包含 UI 状态）
-    logic.UndoManager.saveSnapshot(logicRoot[0], tree, root);
-    parent.children.add(copy);
-    java.util.List<Integer> expandedIds = logic.SwingTreeUtil.collectExpandedIds(tree, root);
-    Integer selectedId = logic.SwingTreeUtil.findSelectedNodeId(tree);
-    logic.SwingTreeUtil.buildSwingTree(logicRoot[0], root);
-    ((DefaultTreeModel)tree.getModel()).reload();
-    logic.SwingTreeUtil.applyUiState(tree, root, expandedIds, selectedId);
-        graphPanel.setLogicRoot(logicRoot[0]);
-        LogicValidator.validateAllNodes(logicRoot[0]);
+    logic.UndoManager.saveSnapshot(logicRoot[0], tree);
+        TreePath copyPath = treeModel.addNode(treeModel.findPath(parent), copy);
+        graphPanel.nodesChanged();
+        LogicValidator.validateChanged(copyPath);
         LogicUiUtil.updateErrorStatusBar(logicRoot[0], status, errorNodeMap);
     }
 
     private LogicNode deepCopyNode(LogicNode node) {
-        LogicNode n = new LogicNode(node.type, nodeIdCounter[0]++);
-        n.params.putAll(node.params);
-        if (node.comments != null && !node.comments.isEmpty()) {
-            for (String c : node.comments) {
-                n.comments.add(c);
+        // copies.get(d) 为当前路径上深度 d 的拷贝，新节点挂到上一层拷贝之下；id 按先序分配
+        java.util.List<LogicNode> copies = new java.util.ArrayList<>();
+        LogicTreeWalker.walk(node, (src, depth) -> {
+            LogicNode n = new LogicNode(src.type, nodeIdCounter[0]++);
+            n.params.putAll(src.params);
+            if (src.comments != null && !src.comments.isEmpty()) {
+                for (String c : src.comments) {
+                    n.comments.add(c);
+                }
             }
-        }
-        n.showComments = node.showComments;
-        for (java.util.Map<String,String> p : node.paramList) n.paramList.add(new java.util.LinkedHashMap<>(p));
-        n.filter.putAll(node.filter);
-        for (java.util.Map<String,String> p : node.filterParamList) n.filterParamList.add(new java.util.LinkedHashMap<>(p));
-        for (LogicNode c : node.children) n.children.add(deepCopyNode(c));
-        return n;
+            n.showComments = src.showComments;
+            for (java.util.Map<String,String> p : src.paramList) n.paramList.add(new java.util.LinkedHashMap<>(p));
+            n.filter.putAll(src.filter);
+            for (java.util.Map<String,String> p : src.filterParamList) n.filterParamList.add(new java.util.LinkedHashMap<>(p));
+            if (depth > 0) copies.get(depth - 1).children.add(n);
+            if (depth == copies.size()) copies.add(n); else copies.set(depth, n);
+            return LogicTreeWalker.Action.CONTINUE;
+        });
+        return copies.get(0);
     }
 }
@@ -2,13 +2,12 @@
 package action;
 import logic.LogicGraphPanel;
 import logic.LogicNode;
+import logic.LogicTreeModel;
 import logic.TreeHelper;
 import logic.LogicUiUtil;
 import logic.LogicValidator;
 
 import javax.swing.*;
-import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreePath;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -17,16 +16,16 @@ import java.util.Map;
 public class DeleteNodeAction implements ActionListener {
     private final JFrame frame;
     private final JTree tree;
-    private final DefaultMutableTreeNode root;
+    private final LogicTreeModel treeModel;
     private final LogicNode[] logicRoot;
     private final LogicGraphPanel graphPanel;
     private final Map<Integer, String> errorNodeMap;
     private final JLabel status;
 
-    public DeleteNodeAction(JFrame frame, JTree tree, DefaultMutableTreeNode root, LogicNode[] logicRoot, LogicGraphPanel graphPanel, JLabel status, Map<Integer, String> errorNodeMap) {
+    public DeleteNodeAction(JFrame frame, JTree tree, LogicTreeModel treeModel, LogicNode[] logicRoot, LogicGraphPanel graphPanel, JLabel status, Map<Integer, String> errorNodeMap) {
         this.frame = frame;
         this.tree = tree;
-        this.root = root;
+        this.treeModel = treeModel;
         this.logicRoot = logicRoot;
         this.graphPanel = graphPanel;
         this.status = status;
@@ -37,13 +36,11 @@ public class DeleteNodeAction implements ActionListener {
     public void actionPerformed(ActionEvent e) {
         TreePath path = tree.getSelectionPath();
         if (path==null || logicRoot[0]==null) return;
-        DefaultMutableTreeNode sel = (DefaultMutableTreeNode)path.getLastPathComponent();
-        if (sel==root) {
+        if (path.getPathCount()==1) {
             JOptionPane.showMessageDialog(frame, "根节点不能删除。", "提示", JOptionPane.WARNING_MESSAGE);
             return;
         }
-        LogicNode parent = TreeHelper.findParent(logicRoot[0], sel, root);
-        LogicNode ln = TreeHelper.findNode(logicRoot[0], sel, root);
+        LogicNode ln = TreeHelper.findNode(path);
         if (ln==null) {
             JOptionPane.showMessageDialog(frame, "未找到节点对应的数据，无法删除。", "错误", JOptionPane.WARNING_MESSAGE);
             return;
@@ -51,19 +48,12 @@ public class DeleteNodeAction implements ActionListener {
         int confirm = JOptionPane.showConfirmDialog(frame, "确定要删除该节点及其所有子节点吗？", "确认删除", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
         if (confirm != JOptionPane.YES_OPTION) return;
         // 保存快照以支持撤销（包含 UI 状态）
-    logic.UndoManager.saveSnapshot(logicRoot[0], tree, root);
-        if (parent!=null)
-            parent.children.remove(ln);
-        else
-            logicRoot[0].children.remove(ln);
-        java.util.List<Integer> expandedIds = logic.SwingTreeUtil.collectExpandedIds(tree, root);
-        Integer selectedId = logic.SwingTreeUtil.findSelectedNodeId(tree);
-        logic.SwingTreeUtil.buildSwingTree(logicRoot[0], root);
-        ((DefaultTreeModel)tree.getModel()).reload();
-        logic.SwingTreeUtil.applyUiState(tree, root, expandedIds, selectedId);
-        graphPanel.setLogicRoot(logicRoot[0]);
-        // 实时校验
-        LogicValidator.validateAllNodes(logicRoot[0]);
+    logic.UndoManager.saveSnapshot(logicRoot[0], tree);
+        // 从父节点移除并只通知该节点（JTree 随之清除其子树的展开与选中状态）
+        treeModel.removeNode(path);
+        graphPanel.nodesChanged();
+        // 实时校验：撤销被删子树的错误并重新校验其父节点所在的作用域
+        LogicValidator.validateRemoved(path);
         LogicUiUtil.updateErrorStatusBar(logicRoot[0], status, errorNodeMap);
     }
 }
@@ -2,8 +2,6 @@ package action;
 
 import logic.*;
 import javax.swing.*;
-import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreePath;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -16,16 +14,16 @@ import java.util.*;
 public class EditCommentsAction implements ActionListener {
     private final JFrame frame;
     private final JTree tree;
-    private final DefaultMutableTreeNode root;
+    private final LogicTreeModel treeModel;
     private final LogicNode[] logicRoot;
     private final LogicGraphPanel graphPanel;
     private final JLabel status;
     private final Map<Integer,String> errorNodeMap;
 
-    public EditCommentsAction(JFrame frame, JTree tree, DefaultMutableTreeNode root, LogicNode[] logicRoot, LogicGraphPanel graphPanel, JLabel status, Map<Integer,String> errorNodeMap) {
+    public EditCommentsAction(JFrame frame, JTree tree, LogicTreeModel treeModel, LogicNode[] logicRoot, LogicGraphPanel graphPanel, JLabel status, Map<Integer,String> errorNodeMap) {
         this.frame = frame;
         this.tree = tree;
-        this.root = root;
+        this.treeModel = treeModel;
         this.logicRoot = logicRoot;
         this.graphPanel = graphPanel;
         this.status = status;
@@ -39,8 +37,7 @@ public class EditCommentsAction implements ActionListener {
             JOptionPane.showMessageDialog(frame, "请先选中要编辑注释的节点", "提示", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
-        DefaultMutableTreeNode sel = (DefaultMutableTreeNode) path.getLastPathComponent();
-        LogicNode ln = TreeHelper.findNode(logicRoot[0], sel, root);
+        LogicNode ln = TreeHelper.findNode(path);
         if (ln == null) {
             JOptionPane.showMessageDialog(frame, "未找到选中节点对应的数据。", "错误", JOptionPane.ERROR_MESSAGE);
             return;
@@ -72,19 +69,15 @@ public class EditCommentsAction implements ActionListener {
         }
 
         // 保存撤销快照（包含 UI 状态）
-        logic.UndoManager.saveSnapshot(logicRoot[0], tree, root);
+        logic.UndoManager.saveSnapshot(logicRoot[0], tree);
 
         // 更新并刷新单节点显示
         ln.comments.clear();
         ln.comments.addAll(newComments);
 
-        java.util.List<Integer> expandedIds = logic.SwingTreeUtil.collectExpandedIds(tree, root);
-        Integer selectedId = logic.SwingTreeUtil.findSelectedNodeId(tree);
-        logic.SwingTreeUtil.buildSwingTree(logicRoot[0], root);
-        ((DefaultTreeModel)tree.getModel()).reload();
-        logic.SwingTreeUtil.applyUiState(tree, root, expandedIds, selectedId);
-        graphPanel.setLogicRoot(logicRoot[0]);
-        logic.LogicValidator.validateAllNodes(logicRoot[0]);
+        treeModel.nodeChanged(path);
+        graphPanel.nodesChanged(ln);
+        logic.LogicValidator.validateChanged(path);
         logic.LogicUiUtil.updateErrorStatusBar(logicRoot[0], status, errorNodeMap);
     }
 }
@@ -11,17 +11,17 @@ import javax.swing.tree.*;
 public class EditNodeAction implements ActionListener {
     private final JFrame frame;
     private final JTree tree;
-    private final DefaultMutableTreeNode root;
+    private final LogicTreeModel treeModel;
     private final LogicNode[] logicRoot;
     private final ConfigXmlLoader[] config;
     private final LogicGraphPanel graphPanel;
     private final JLabel status;
     private final Map<Integer, String> errorNodeMap;
 
-    public EditNodeAction(JFrame frame, JTree tree, DefaultMutableTreeNode root, LogicNode[] logicRoot, ConfigXmlLoader[] config, LogicGraphPanel graphPanel, JLabel status, Map<Integer, String> errorNodeMap) {
+    public EditNodeAction(JFrame frame, JTree tree, LogicTreeModel treeModel, LogicNode[] logicRoot, ConfigXmlLoader[] config, LogicGraphPanel graphPanel, JLabel status, Map<Integer, String> errorNodeMap) {
         this.frame = frame;
         this.tree = tree;
-        this.root = root;
+        this.treeModel = treeModel;
         this.logicRoot = logicRoot;
         this.config = config;
         this.graphPanel = graphPanel;
@@ -33,8 +33,7 @@ public class EditNodeAction implements ActionListener {
     public void actionPerformed(ActionEvent e) {
         TreePath path = tree.getSelectionPath();
         if (path==null || logicRoot[0]==null) return;
-        DefaultMutableTreeNode sel = (DefaultMutableTreeNode)path.getLastPathComponent();
-        LogicNode ln = TreeHelper.findNode(logicRoot[0], sel, root);
+        LogicNode ln = TreeHelper.findNode(path);
         if (ln==null) {
             JOptionPane.showMessageDialog(frame, "未找到节点对应的数据。", "错误", JOptionPane.WARNING_MESSAGE);
             return;
@@ -63,15 +62,11 @@ public class EditNodeAction implements ActionListener {
                 String v = JOptionPane.showInputDialog(frame, "变量名(var):", ln.params.getOrDefault("var",""));
                 if (v == null) return;
                 // 保存快照并应用修改
-                logic.UndoManager.saveSnapshot(logicRoot[0], tree, root);
+                logic.UndoManager.saveSnapshot(logicRoot[0], tree);
                 ln.params.put("var", v);
-                java.util.List<Integer> expandedIds = logic.SwingTreeUtil.collectExpandedIds(tree, root);
-                Integer selectedId = logic.SwingTreeUtil.findSelectedNodeId(tree);
-                logic.SwingTreeUtil.buildSwingTree(logicRoot[0], root);
-                ((DefaultTreeModel)tree.getModel()).reload();
-                logic.SwingTreeUtil.applyUiState(tree, root, expandedIds, selectedId);
-                graphPanel.setLogicRoot(logicRoot[0]);
-                LogicValidator.validateAllNodes(logicRoot[0]);
+                treeModel.nodeChanged(path);
+                graphPanel.nodesChanged(ln);
+                LogicValidator.validateChanged(path);
                 LogicUiUtil.updateErrorStatusBar(logicRoot[0], status, errorNodeMap);
                 return;
             } else if (choice.startsWith("修改过滤器参数 ")) {
@@ -93,15 +88,11 @@ public class EditNodeAction implements ActionListener {
                     String oldVal = target.getOrDefault("var", "");
                     String nv = JOptionPane.showInputDialog(frame, "新过滤器参数值 (var):", oldVal);
                     if (nv == null) return;
-                    logic.UndoManager.saveSnapshot(logicRoot[0], tree, root);
+                    logic.UndoManager.saveSnapshot(logicRoot[0], tree);
                     target.put("var", nv);
-                    java.util.List<Integer> expandedIds = logic.SwingTreeUtil.collectExpandedIds(tree, root);
-                    Integer selectedId = logic.SwingTreeUtil.findSelectedNodeId(tree);
-                    logic.SwingTreeUtil.buildSwingTree(logicRoot[0], root);
-                    ((DefaultTreeModel)tree.getModel()).reload();
-                    logic.SwingTreeUtil.applyUiState(tree, root, expandedIds, selectedId);
-                    graphPanel.setLogicRoot(logicRoot[0]);
-                    LogicValidator.validateAllNodes(logicRoot[0]);
+                    treeModel.nodeChanged(path);
+                    graphPanel.nodesChanged(ln);
+                    LogicValidator.validateChanged(path);
                     LogicUiUtil.updateErrorStatusBar(logicRoot[0], status, errorNodeMap);
                 }
                 return;
@@ -112,15 +103,11 @@ public class EditNodeAction implements ActionListener {
                 ConfigXmlLoader.PatternInfo[] patternArr = config[0].patterns.toArray(new ConfigXmlLoader.PatternInfo[0]);
                 ConfigXmlLoader.PatternInfo selPattern = (ConfigXmlLoader.PatternInfo)JOptionPane.showInputDialog(frame, "选择集合名(patterns):", "集合名", JOptionPane.PLAIN_MESSAGE, null, patternArr, Arrays.stream(patternArr).filter(p->p.name.equals(ln.params.getOrDefault("in",""))).findFirst().orElse(patternArr[0]));
                 if (selPattern==null) return;
-                logic.UndoManager.saveSnapshot(logicRoot[0], tree, root);
+                logic.UndoManager.saveSnapshot(logicRoot[0], tree);
                 ln.params.put("in", selPattern.name);
-                java.util.List<Integer> expandedIds = logic.SwingTreeUtil.collectExpandedIds(tree, root);
-                Integer selectedId = logic.SwingTreeUtil.findSelectedNodeId(tree);
-                logic.SwingTreeUtil.buildSwingTree(logicRoot[0], root);
-                ((DefaultTreeModel)tree.getModel()).reload();
-                logic.SwingTreeUtil.applyUiState(tree, root, expandedIds, selectedId);
-                graphPanel.setLogicRoot(logicRoot[0]);
-                LogicValidator.validateAllNodes(logicRoot[0]);
+                treeModel.nodeChanged(path);
+                graphPanel.nodesChanged(ln);
+                LogicValidator.validateChanged(path);
                 LogicUiUtil.updateErrorStatusBar(logicRoot[0], status, errorNodeMap);
                 return;
             } else if (choice.equals("修改过滤器(ffunc)")) {
@@ -155,16 +142,12 @@ public class EditNodeAction implements ActionListener {
                         filterParamList.add(fp);
                     }
                 }
-                logic.UndoManager.saveSnapshot(logicRoot[0], tree, root);
+                logic.UndoManager.saveSnapshot(logicRoot[0], tree);
                 ln.filter.clear(); ln.filter.putAll(filter);
                 ln.filterParamList.clear(); ln.filterParamList.addAll(filterParamList);
-                java.util.List<Integer> expandedIds = logic.SwingTreeUtil.collectExpandedIds(tree, root);
-                Integer selectedId = logic.SwingTreeUtil.findSelectedNodeId(tree);
-                logic.SwingTreeUtil.buildSwingTree(logicRoot[0], root);
-                ((DefaultTreeModel)tree.getModel()).reload();
-                logic.SwingTreeUtil.applyUiState(tree, root, expandedIds, selectedId);
-                graphPanel.setLogicRoot(logicRoot[0]);
-                LogicValidator.validateAllNodes(logicRoot[0]);
+                treeModel.nodeChanged(path);
+                graphPanel.nodesChanged(ln);
+                LogicValidator.validateChanged(path);
                 LogicUiUtil.updateErrorStatusBar(logicRoot[0], status, errorNodeMap);
                 return;
             }
@@ -189,15 +172,11 @@ public class EditNodeAction implements ActionListener {
                     String oldVal = target.getOrDefault("var", "");
                     String nv = JOptionPane.showInputDialog(frame, "新参数值 (var):", oldVal);
                     if (nv == null) return;
-                    logic.UndoManager.saveSnapshot(logicRoot[0], tree, root);
+                    logic.UndoManager.saveSnapshot(logicRoot[0], tree);
                     target.put("var", nv);
-                    java.util.List<Integer> expandedIds = logic.SwingTreeUtil.collectExpandedIds(tree, root);
-                    Integer selectedId = logic.SwingTreeUtil.findSelectedNodeId(tree);
-                    logic.SwingTreeUtil.buildSwingTree(logicRoot[0], root);
-                    ((DefaultTreeModel)tree.getModel()).reload();
-                    logic.SwingTreeUtil.applyUiState(tree, root, expandedIds, selectedId);
-                    graphPanel.setLogicRoot(logicRoot[0]);
-                    LogicValidator.validateAllNodes(logicRoot[0]);
+                    treeModel.nodeChanged(path);
+                    graphPanel.nodesChanged(ln);
+                    LogicValidator.validateChanged(path);
                     LogicUiUtil.updateErrorStatusBar(logicRoot[0], status, errorNodeMap);
                 }
                 return;
@@ -279,20 +258,16 @@ public class EditNodeAction implements ActionListener {
             default:
         }
         // 保存快照以支持撤销（包含 UI 展开/选中状态）
-        logic.UndoManager.saveSnapshot(logicRoot[0], tree, root);
+        logic.UndoManager.saveSnapshot(logicRoot[0], tree);
         // apply changes
         ln.type = type;
         ln.params.clear(); ln.params.putAll(params);
         ln.paramList.clear(); ln.paramList.addAll(paramList);
         ln.filter.clear(); ln.filter.putAll(filter);
         ln.filterParamList.clear(); ln.filterParamList.addAll(filterParamList);
-    java.util.List<Integer> expandedIds = logic.SwingTreeUtil.collectExpandedIds(tree, root);
-    Integer selectedId = logic.SwingTreeUtil.findSelectedNodeId(tree);
-    logic.SwingTreeUtil.buildSwingTree(logicRoot[0], root);
-    ((DefaultTreeModel)tree.getModel()).reload();
-    logic.SwingTreeUtil.applyUiState(tree, root, expandedIds, selectedId);
-        graphPanel.setLogicRoot(logicRoot[0]);
-        logic.LogicValidator.validateAllNodes(logicRoot[0]);
+        treeModel.nodeChanged(path);
+        graphPanel.nodesChanged(ln);
+        logic.LogicValidator.validateChanged(path);
         logic.LogicUiUtil.updateErrorStatusBar(logicRoot[0], status, errorNodeMap);
     }
 }
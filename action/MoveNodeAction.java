@@ -2,7 +2,6 @@ package action;
 
 import logic.*;
 import javax.swing.*;
-import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.TreePath;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -11,16 +10,16 @@ import java.util.*;
 public class MoveNodeAction implements ActionListener {
     private final JFrame frame;
     private final JTree tree;
-    private final DefaultMutableTreeNode root;
+    private final LogicTreeModel treeModel;
     private final LogicNode[] logicRoot;
     private final LogicGraphPanel graphPanel;
     private final JLabel status;
     private final Map<Integer, String> errorNodeMap;
 
-    public MoveNodeAction(JFrame frame, JTree tree, DefaultMutableTreeNode root, LogicNode[] logicRoot, LogicGraphPanel graphPanel, JLabel status, Map<Integer, String> errorNodeMap) {
+    public MoveNodeAction(JFrame frame, JTree tree, LogicTreeModel treeModel, LogicNode[] logicRoot, LogicGraphPanel graphPanel, JLabel status, Map<Integer, String> errorNodeMap) {
         this.frame = frame;
         this.tree = tree;
-        this.root = root;
+        this.treeModel = treeModel;
         this.logicRoot = logicRoot;
         this.graphPanel = graphPanel;
         this.status = status;
@@ -31,46 +30,39 @@ public class MoveNodeAction implements ActionListener {
     public void actionPerformed(ActionEvent e) {
         TreePath fromPath = tree.getSelectionPath();
         if (fromPath==null || logicRoot[0]==null) return;
-        DefaultMutableTreeNode fromSel = (DefaultMutableTreeNode)fromPath.getLastPathComponent();
-        if (fromSel==root) {
+        if (fromPath.getPathCount()==1) {
             JOptionPane.showMessageDialog(frame, "根节点不能移动。", "提示", JOptionPane.WARNING_MESSAGE);
             return;
         }
-        LogicNode fromParent = TreeHelper.findParent(logicRoot[0], fromSel, root);
-        LogicNode fromNode = TreeHelper.findNode(logicRoot[0], fromSel, root);
+        LogicNode fromNode = TreeHelper.findNode(fromPath);
         if (fromNode==null) {
             JOptionPane.showMessageDialog(frame, "未找到选中节点对应的数据。", "错误", JOptionPane.WARNING_MESSAGE);
             return;
         }
-        java.util.List<DefaultMutableTreeNode> candidates = new java.util.ArrayList<>();
-        TreeHelper.collectNodes(root, fromSel, candidates, false);
+        java.util.List<LogicNode> candidates = new java.util.ArrayList<>();
+        TreeHelper.collectNodes(logicRoot[0], fromPath, candidates, false);
         if (candidates.isEmpty()) {
             JOptionPane.showMessageDialog(frame, "没有可用于移动的目标节点。", "提示", JOptionPane.WARNING_MESSAGE);
             return;
         }
-        DefaultMutableTreeNode[] arr = candidates.toArray(new DefaultMutableTreeNode[0]);
-        DefaultMutableTreeNode toSel = (DefaultMutableTreeNode)JOptionPane.showInputDialog(frame, "选择目标父节点:", "移动到...", JOptionPane.PLAIN_MESSAGE, null, arr, arr[0]);
-        if (toSel==null) return;
-        LogicNode toNode = TreeHelper.findNode(logicRoot[0], toSel, root);
-        if (toNode==null) {
-            JOptionPane.showMessageDialog(frame, "未找到目标节点对应的数据。", "错误", JOptionPane.WARNING_MESSAGE);
-            return;
-        }
+        LogicNode[] arr = candidates.toArray(new LogicNode[0]);
+        LogicNode toNode = (LogicNode)JOptionPane.showInputDialog(frame, "选择目标父节点:", "移动到...", JOptionPane.PLAIN_MESSAGE, null, arr, arr[0]);
+        if (toNode==null) return;
     // 保存快照以支持撤销（包含 UI 状态）
-    logic.UndoManager.saveSnapshot(logicRoot[0], tree, root);
-        if (fromParent!=null) {
-            fromParent.children.remove(fromNode);
-        } else {
-            logicRoot[0].children.remove(fromNode);
-        }
-        toNode.children.add(fromNode);
-        java.util.List<Integer> expandedIds = logic.SwingTreeUtil.collectExpandedIds(tree, root);
-        Integer selectedId = logic.SwingTreeUtil.findSelectedNodeId(tree);
-        logic.SwingTreeUtil.buildSwingTree(logicRoot[0], root);
-        ((javax.swing.tree.DefaultTreeModel)tree.getModel()).reload();
-        logic.SwingTreeUtil.applyUiState(tree, root, expandedIds, selectedId);
-        graphPanel.setLogicRoot(logicRoot[0]);
-        logic.LogicValidator.validateAllNodes(logicRoot[0]);
+    logic.UndoManager.saveSnapshot(logicRoot[0], tree);
+        // 目标不在被移动的子树中，移除后其路径仍然有效
+        TreePath toPath = treeModel.findPath(toNode);
+        java.util.List<TreePath> expanded = SwingTreeUtil.collectExpandedPaths(tree, fromPath);
+        treeModel.removeNode(fromPath);
+        TreePath newPath = treeModel.addNode(toPath, fromNode);
+        // 移动后的子树保持原来的展开状态，并继续选中
+        SwingTreeUtil.expandMoved(tree, expanded, fromPath, newPath);
+        tree.setSelectionPath(newPath);
+        tree.scrollPathToVisible(newPath);
+        graphPanel.nodesChanged();
+        // 先按原位置移除、再按新位置插入增量校验
+        logic.LogicValidator.validateRemoved(fromPath);
+        logic.LogicValidator.validateChanged(newPath);
         logic.LogicUiUtil.updateErrorStatusBar(logicRoot[0], status, errorNodeMap);
     }
 }
@@ -2,31 +2,26 @@
 package action;
 import logic.LogicGraphPanel;
 import logic.LogicNode;
+import logic.LogicTreeModel;
 import logic.LogicUiUtil;
 
 import javax.swing.*;
-import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.DefaultTreeModel;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.DocumentBuilder;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
 public class OpenXmlAction implements ActionListener {
     private final JFrame frame;
-    private final DefaultMutableTreeNode root;
+    private final LogicTreeModel treeModel;
     private final LogicNode[] logicRoot;
     private final int[] nodeIdCounter;
     private final LogicGraphPanel graphPanel;
     private final JTree tree;
     private final JLabel status;
 
-    public OpenXmlAction(JFrame frame, JTree tree, DefaultMutableTreeNode root, LogicNode[] logicRoot, int[] nodeIdCounter, LogicGraphPanel graphPanel, JLabel status) {
+    public OpenXmlAction(JFrame frame, JTree tree, LogicTreeModel treeModel, LogicNode[] logicRoot, int[] nodeIdCounter, LogicGraphPanel graphPanel, JLabel status) {
         this.frame = frame;
         this.tree = tree;
-        this.root = root;
+        this.treeModel = treeModel;
         this.logicRoot = logicRoot;
         this.nodeIdCounter = nodeIdCounter;
         this.graphPanel = graphPanel;
@@ -45,18 +40,12 @@ public class OpenXmlAction implements ActionListener {
                 logic.UndoManager.clearTemporaryFiles();
             }
             try {
-                DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-                DocumentBuilder db = dbf.newDocumentBuilder();
-                Document doc = db.parse(fc.getSelectedFile());
-                Element fe = (Element)doc.getDocumentElement();
+                // StAX 单遍读取直接构建节点树，不建立 DOM
                 nodeIdCounter[0] = 1;
-                LogicNode temp = logic.LogicXmlUtil.parseXml(fe, nodeIdCounter);
+                LogicNode temp = logic.LogicXmlUtil.parseXml(fc.getSelectedFile(), nodeIdCounter);
                 // 不在打开时做阻断校验，仅加载文件，然后使用全量校验收集并展示错误信息
                 logicRoot[0] = temp;
-                root.setUserObject(logicRoot[0].toString());
-                root.removeAllChildren();
-                logic.SwingTreeUtil.buildSwingTree(logicRoot[0], root);
-                ((DefaultTreeModel)tree.getModel()).reload();
+                treeModel.setRoot(logicRoot[0]);
                 graphPanel.setLogicRoot(logicRoot[0]);
                 // 使用 LogicValidator 的全量校验收集每个节点的错误
                 logic.LogicValidator.validateAllNodes(logicRoot[0]);
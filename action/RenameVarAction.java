@@ -1,14 +1,13 @@
 package action;
 import logic.LogicGraphPanel;
 import logic.LogicNode;
-import logic.SwingTreeUtil;
+import logic.LogicTreeModel;
+import logic.LogicTreeWalker;
 import logic.TreeHelper;
 import logic.LogicUiUtil;
 import logic.LogicValidator;
 
 import javax.swing.*;
-import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreePath;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -17,16 +16,16 @@ import java.util.Map;
 public class RenameVarAction implements ActionListener {
     private final JFrame frame;
     private final JTree tree;
-    private final DefaultMutableTreeNode root;
+    private final LogicTreeModel treeModel;
     private final LogicNode[] logicRoot;
     private final LogicGraphPanel graphPanel;
     private final Map<Integer, String> errorNodeMap;
     private final JLabel status;
 
-    public RenameVarAction(JFrame frame, JTree tree, DefaultMutableTreeNode root, LogicNode[] logicRoot, LogicGraphPanel graphPanel, JLabel status, Map<Integer, String> errorNodeMap) {
+    public RenameVarAction(JFrame frame, JTree tree, LogicTreeModel treeModel, LogicNode[] logicRoot, LogicGraphPanel graphPanel, JLabel status, Map<Integer, String> errorNodeMap) {
         this.frame = frame;
         this.tree = tree;
-        this.root = root;
+        this.treeModel = treeModel;
         this.logicRoot = logicRoot;
         this.graphPanel = graphPanel;
         this.status = status;
@@ -37,8 +36,7 @@ public class RenameVarAction implements ActionListener {
     public void actionPerformed(ActionEvent e) {
         TreePath path = tree.getSelectionPath();
         if (path == null || logicRoot[0] == null) return;
-        DefaultMutableTreeNode sel = (DefaultMutableTreeNode)path.getLastPathComponent();
-        LogicNode ln = TreeHelper.findNode(logicRoot[0], sel, root);
+        LogicNode ln = TreeHelper.findNode(path);
         if (ln == null) return;
         if (ln.type != LogicNode.NodeType.FORALL && ln.type != LogicNode.NodeType.EXISTS) {
             JOptionPane.showMessageDialog(frame, "请选择 forall 或 exists 节点进行重命名", "提示", JOptionPane.INFORMATION_MESSAGE);
@@ -53,14 +51,14 @@ public class RenameVarAction implements ActionListener {
         if (newVar == null || newVar.isEmpty()) return;
         // 冲突检测：收集祖先作用域中已定义的变量
         java.util.Set<String> ancestorVars = new java.util.HashSet<>();
-        DefaultMutableTreeNode parentSwing = (DefaultMutableTreeNode) sel.getParent();
-        while (parentSwing != null) {
-            LogicNode pnode = TreeHelper.findNode(logicRoot[0], parentSwing, root);
+        TreePath parentPath = path.getParentPath();
+        while (parentPath != null) {
+            LogicNode pnode = TreeHelper.findNode(parentPath);
             if (pnode != null && (pnode.type == LogicNode.NodeType.FORALL || pnode.type == LogicNode.NodeType.EXISTS)) {
                 String pv = pnode.params.get("var");
                 if (pv != null && !pv.isEmpty()) ancestorVars.add(pv);
             }
-            parentSwing = (DefaultMutableTreeNode) parentSwing.getParent();
+            parentPath = parentPath.getParentPath();
         }
         // 检查子孙中是否也定义了相同名字
         java.util.List<String> descendantDefs = new java.util.ArrayList<>();
@@ -79,48 +77,56 @@ public class RenameVarAction implements ActionListener {
             if (ok != JOptionPane.YES_OPTION) return;
         }
     // 保存快照以支持撤销（包含 UI 状态）
-    logic.UndoManager.saveSnapshot(logicRoot[0], tree, root);
+    logic.UndoManager.saveSnapshot(logicRoot[0], tree);
     // 在当前节点修改定义
     ln.params.put("var", newVar);
         // 递归子树把所有使用 oldVar 的位置替换为 newVar
-        renameVarInSubtree(ln, oldVar, newVar);
+        java.util.List<TreePath> renamed = new java.util.ArrayList<>();
+        renamed.add(path);
+        renameVarInSubtree(path, oldVar, newVar, renamed);
 
-    // 重新构建树与图并校验（使用 id 列表恢复展开/选中状态以避免丢失）
-    java.util.List<Integer> expandedIds = SwingTreeUtil.collectExpandedIds(tree, root);
-    Integer selectedId = SwingTreeUtil.findSelectedNodeId(tree);
-    SwingTreeUtil.buildSwingTree(logicRoot[0], root);
-    ((DefaultTreeModel)tree.getModel()).reload();
-    SwingTreeUtil.applyUiState(tree, root, expandedIds, selectedId);
-        graphPanel.setLogicRoot(logicRoot[0]);
-        LogicValidator.validateAllNodes(logicRoot[0]);
+        // 只通知被改写的节点（树与图），再校验
+        LogicNode[] renamedNodes = new LogicNode[renamed.size()];
+        for (int i = 0; i < renamedNodes.length; i++) {
+            treeModel.nodeChanged(renamed.get(i));
+            renamedNodes[i] = (LogicNode) renamed.get(i).getLastPathComponent();
+        }
+        graphPanel.nodesChanged(renamedNodes);
+        // 改动都在该量词节点的子树内
+        LogicValidator.validateChanged(path);
         LogicUiUtil.updateErrorStatusBar(logicRoot[0], status, errorNodeMap);
     }
 
-    private void renameVarInSubtree(LogicNode node, String oldVar, String newVar) {
-        // paramList
-        if (node.paramList != null) {
-            for (java.util.Map<String,String> p : node.paramList) {
-                String v = p.get("var");
-                if (v != null && v.equals(oldVar)) p.put("var", newVar);
+    // 被替换过参数的节点路径加入 renamed
+    private void renameVarInSubtree(TreePath path, String oldVar, String newVar, java.util.List<TreePath> renamed) {
+        LogicTreeWalker.walk(path, LogicTreeWalker.PATHS, (p, depth) -> {
+            LogicNode node = (LogicNode) p.getLastPathComponent();
+            boolean changed = false;
+            // paramList
+            if (node.paramList != null) {
+                for (java.util.Map<String,String> m : node.paramList) {
+                    String v = m.get("var");
+                    if (v != null && v.equals(oldVar)) { m.put("var", newVar); changed = true; }
+                }
             }
-        }
-        // filterParamList
-        if (node.filterParamList != null) {
-            for (java.util.Map<String,String> p : node.filterParamList) {
-                String v = p.get("var");
-                if (v != null && v.equals(oldVar)) p.put("var", newVar);
+            // filterParamList
+            if (node.filterParamList != null) {
+                for (java.util.Map<String,String> m : node.filterParamList) {
+                    String v = m.get("var");
+                    if (v != null && v.equals(oldVar)) { m.put("var", newVar); changed = true; }
+                }
             }
-        }
-        // children
-        for (LogicNode c : node.children) renameVarInSubtree(c, oldVar, newVar);
+            if (changed && depth > 0) renamed.add(p);
+            return LogicTreeWalker.Action.CONTINUE;
+        });
     }
 
     private void collectDescendantDefs(LogicNode node, String name, java.util.List<String> out) {
-        for (LogicNode c : node.children) {
-            if ((c.type == LogicNode.NodeType.FORALL || c.type == LogicNode.NodeType.EXISTS) && name.equals(c.params.get("var"))) {
+        LogicTreeWalker.walk(node, (c, depth) -> {
+            if (depth > 0 && (c.type == LogicNode.NodeType.FORALL || c.type == LogicNode.NodeType.EXISTS) && name.equals(c.params.get("var"))) {
                 out.add(c.toString());
             }
-            collectDescendantDefs(c, name, out);
-        }
+            return LogicTreeWalker.Action.CONTINUE;
+        });
     }
 }
@@ -5,10 +5,6 @@ import javax.swing.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.Map;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.DocumentBuilder;
-import org.w3c.dom.Document;
-import javax.xml.transform.TransformerFactory;
 
 public class SaveXmlAction implements ActionListener {
     private final JFrame frame;
@@ -38,29 +34,25 @@ public class SaveXmlAction implements ActionListener {
         }
         JFileChooser fc = new JFileChooser(System.getProperty("user.dir"));
         if (fc.showSaveDialog(frame)==JFileChooser.APPROVE_OPTION) {
-            try {
-                DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-                DocumentBuilder db = dbf.newDocumentBuilder();
-                Document doc = db.newDocument();
-                // 若校验未通过，在文档前添加注释说明（便于追踪）
-                if (hasErrors) {
-                    String shortNote = "VALIDATION FAILED";
-                    doc.appendChild(doc.createComment(shortNote));
-                }
-                // 先写入根节点自身的注释（如果有），每条注释作为独立的 COMMENT 节点
-                if (logicRoot[0].comments != null && !logicRoot[0].comments.isEmpty()) {
-                    for (String com : logicRoot[0].comments) {
-                        if (com == null) continue;
-                        String txt = com.trim();
-                        if (txt.isEmpty()) continue;
-                        doc.appendChild(doc.createComment(txt));
-                    }
+            // 文档级注释
+            java.util.List<String> docComments = new java.util.ArrayList<>();
+            // 若校验未通过，在文档前添加注释说明（便于追踪）
+            if (hasErrors) {
+                String shortNote = "VALIDATION FAILED";
+                docComments.add(shortNote);
+            }
+            // 先写入根节点自身的注释（如果有），每条注释作为独立的注释
+            if (logicRoot[0].comments != null && !logicRoot[0].comments.isEmpty()) {
+                for (String com : logicRoot[0].comments) {
+                    if (com == null) continue;
+                    String txt = com.trim();
+                    if (txt.isEmpty()) continue;
+                    docComments.add(txt);
                 }
-                doc.appendChild(logic.LogicXmlUtil.toXml(logicRoot[0], doc));
-                TransformerFactory tf = TransformerFactory.newInstance();
-                javax.xml.transform.Transformer t = tf.newTransformer();
-                t.setOutputProperty(javax.xml.transform.OutputKeys.INDENT, "yes");
-                t.transform(new javax.xml.transform.dom.DOMSource(doc), new javax.xml.transform.stream.StreamResult(fc.getSelectedFile()));
+            }
+            // 流式写出，不建立 DOM
+            try (java.io.OutputStream out = new java.io.FileOutputStream(fc.getSelectedFile())) {
+                logic.LogicXmlUtil.writeXml(logicRoot[0], docComments, out);
                 status.setText("XML保存成功");
                 // 标记为已保存
                 logic.UndoManager.setSaved(true);
@@ -11,16 +11,16 @@ import javax.swing.tree.*;
 public class SwapNodeAction implements ActionListener {
     private final JFrame frame;
     private final JTree tree;
-    private final DefaultMutableTreeNode root;
+    private final LogicTreeModel treeModel;
     private final LogicNode[] logicRoot;
     private final LogicGraphPanel graphPanel;
     private final JLabel status;
     private final Map<Integer, String> errorNodeMap;
 
-    public SwapNodeAction(JFrame frame, JTree tree, DefaultMutableTreeNode root, LogicNode[] logicRoot, LogicGraphPanel graphPanel, JLabel status, Map<Integer, String> errorNodeMap) {
+    public SwapNodeAction(JFrame frame, JTree tree, LogicTreeModel treeModel, LogicNode[] logicRoot, LogicGraphPanel graphPanel, JLabel status, Map<Integer, String> errorNodeMap) {
         this.frame = frame;
         this.tree = tree;
-        this.root = root;
+        this.treeModel = treeModel;
         this.logicRoot = logicRoot;
         this.graphPanel = graphPanel;
         this.status = status;
@@ -31,36 +31,30 @@ public class SwapNodeAction implements ActionListener {
     public void actionPerformed(ActionEvent e) {
         TreePath fromPath = tree.getSelectionPath();
         if (fromPath==null || logicRoot[0]==null) return;
-        DefaultMutableTreeNode fromSel = (DefaultMutableTreeNode)fromPath.getLastPathComponent();
-        if (fromSel==root) {
+        if (fromPath.getPathCount()==1) {
             JOptionPane.showMessageDialog(frame, "根节点不能参与节点交换。", "提示", JOptionPane.WARNING_MESSAGE);
             return;
         }
-        LogicNode fromNode = TreeHelper.findNode(logicRoot[0], fromSel, root);
+        LogicNode fromNode = TreeHelper.findNode(fromPath);
         if (fromNode==null) {
             JOptionPane.showMessageDialog(frame, "未找到选中节点对应的数据。", "错误", JOptionPane.WARNING_MESSAGE);
             return;
         }
-        java.util.List<DefaultMutableTreeNode> candidates = new java.util.ArrayList<>();
-        Enumeration<TreeNode> en = root.depthFirstEnumeration();
-        while (en.hasMoreElements()) {
-            DefaultMutableTreeNode node = (DefaultMutableTreeNode)en.nextElement();
-            if (node != fromSel && node != root) candidates.add(node);
+        java.util.List<LogicNode> candidates = new java.util.ArrayList<>();
+        java.util.List<LogicNode> all = new java.util.ArrayList<>();
+        TreeHelper.collectPostorder(logicRoot[0], all);
+        for (LogicNode node : all) {
+            if (node != fromNode && node != logicRoot[0]) candidates.add(node);
         }
         if (candidates.isEmpty()) {
             JOptionPane.showMessageDialog(frame, "没有可用于交换的其他节点。", "提示", JOptionPane.WARNING_MESSAGE);
             return;
         }
-        DefaultMutableTreeNode[] arr = candidates.toArray(new DefaultMutableTreeNode[0]);
-        DefaultMutableTreeNode toSel = (DefaultMutableTreeNode)JOptionPane.showInputDialog(frame, "选择要节点交换的节点:", "节点交换", JOptionPane.PLAIN_MESSAGE, null, arr, arr[0]);
-        if (toSel==null) return;
-        LogicNode toNode = TreeHelper.findNode(logicRoot[0], toSel, root);
-        if (toNode==null) {
-            JOptionPane.showMessageDialog(frame, "未找到目标节点对应的数据。", "错误", JOptionPane.WARNING_MESSAGE);
-            return;
-        }
+        LogicNode[] arr = candidates.toArray(new LogicNode[0]);
+        LogicNode toNode = (LogicNode)JOptionPane.showInputDialog(frame, "选择要节点交换的节点:", "节点交换", JOptionPane.PLAIN_MESSAGE, null, arr, arr[0]);
+        if (toNode==null) return;
         // 保存快照以支持撤销（包含 UI 状态）
-        logic.UndoManager.saveSnapshot(logicRoot[0], tree, root);
+        logic.UndoManager.saveSnapshot(logicRoot[0], tree);
         // 交换 type
         LogicNode.NodeType tmpType = fromNode.type;
         fromNode.type = toNode.type;
@@ -96,13 +90,13 @@ public class SwapNodeAction implements ActionListener {
         boolean tmpShow = fromNode.showComments;
         fromNode.showComments = toNode.showComments;
         toNode.showComments = tmpShow;
-    java.util.List<Integer> expandedIds = logic.SwingTreeUtil.collectExpandedIds(tree, root);
-    Integer selectedId = logic.SwingTreeUtil.findSelectedNodeId(tree);
-    logic.SwingTreeUtil.buildSwingTree(logicRoot[0], root);
-    ((javax.swing.tree.DefaultTreeModel)tree.getModel()).reload();
-    logic.SwingTreeUtil.applyUiState(tree, root, expandedIds, selectedId);
-        graphPanel.setLogicRoot(logicRoot[0]);
-        logic.LogicValidator.validateAllNodes(logicRoot[0]);
+        // 只交换节点内容，子节点不变：通知两个节点重绘即可
+        TreePath toPath = treeModel.findPath(toNode);
+        treeModel.nodeChanged(fromPath);
+        treeModel.nodeChanged(toPath);
+        graphPanel.nodesChanged(fromNode, toNode);
+        logic.LogicValidator.validateChanged(fromPath);
+        logic.LogicValidator.validateChanged(toPath);
         logic.LogicUiUtil.updateErrorStatusBar(logicRoot[0], status, errorNodeMap);
     }
 }
@@ -1,26 +1,26 @@
 package action;
 
 import logic.LogicNode;
+import logic.LogicTreeModel;
+import logic.LogicTreeWalker;
 import logic.LogicUiUtil;
 import logic.LogicValidator;
 import logic.SwingTreeUtil;
 import logic.UndoManager;
 
 import javax.swing.*;
-import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.DefaultTreeModel;
 
 public class UndoAction implements java.awt.event.ActionListener {
     private final JTree tree;
-    private final DefaultMutableTreeNode root;
+    private final LogicTreeModel treeModel;
     private final LogicNode[] logicRoot;
     private final int[] nodeIdCounter;
     private final logic.LogicGraphPanel graphPanel;
     private final JLabel status;
 
-    public UndoAction(JTree tree, DefaultMutableTreeNode root, LogicNode[] logicRoot, int[] nodeIdCounter, logic.LogicGraphPanel graphPanel, JLabel status) {
+    public UndoAction(JTree tree, LogicTreeModel treeModel, LogicNode[] logicRoot, int[] nodeIdCounter, logic.LogicGraphPanel graphPanel, JLabel status) {
         this.tree = tree;
-        this.root = root;
+        this.treeModel = treeModel;
         this.logicRoot = logicRoot;
         this.nodeIdCounter = nodeIdCounter;
         this.graphPanel = graphPanel;
@@ -39,10 +39,7 @@ public class UndoAction implements java.awt.event.ActionListener {
             // reset nodeIdCounter to a safe value (max id + 1)
             int maxId = findMaxId(restored);
             nodeIdCounter[0] = maxId + 1;
-            root.setUserObject(logicRoot[0].toString());
-            root.removeAllChildren();
-            SwingTreeUtil.buildSwingTree(logicRoot[0], root);
-            ((DefaultTreeModel)tree.getModel()).reload();
+            treeModel.setRoot(logicRoot[0]);
             graphPanel.setLogicRoot(logicRoot[0]);
             LogicValidator.validateAllNodes(logicRoot[0]);
             LogicUiUtil.updateErrorStatusBar(logicRoot[0], status, logic.LogicValidator.errorNodeMap);
@@ -60,7 +57,7 @@ public class UndoAction implements java.awt.event.ActionListener {
             if (so instanceof Number) selVal = ((Number)so).intValue();
             final Integer selFinal = selVal;
             javax.swing.SwingUtilities.invokeLater(() -> {
-                logic.SwingTreeUtil.applyUiState(tree, root, expanded, selFinal);
+                logic.SwingTreeUtil.applyUiState(tree, expanded, selFinal);
             });
             status.setText("已撤销到上一个快照");
             UndoManager.setUndoAvailableAndNotify(false);
@@ -70,8 +67,11 @@ public class UndoAction implements java.awt.event.ActionListener {
     }
 
     private int findMaxId(LogicNode node) {
-        int m = node.nodeId;
-        for (LogicNode c : node.children) m = Math.max(m, findMaxId(c));
-        return m;
+        int[] m = {node.nodeId};
+        LogicTreeWalker.walk(node, (n, depth) -> {
+            m[0] = Math.max(m[0], n.nodeId);
+            return LogicTreeWalker.Action.CONTINUE;
+        });
+        return m[0];
     }
 }
@@ -21,60 +21,67 @@ public class ConstraintVisualizer {
      * 深拷贝LogicNode子树（不复用nodeId，分配新id）
      */
     static LogicNode deepCopyNode(LogicNode node) {
-        LogicNode n = new LogicNode(node.type, nodeIdCounter[0]++);
-        n.params.putAll(node.params);
-        for (java.util.Map<String,String> p : node.paramList) n.paramList.add(new java.util.LinkedHashMap<>(p));
-        n.filter.putAll(node.filter);
-        for (java.util.Map<String,String> p : node.filterParamList) n.filterParamList.add(new java.util.LinkedHashMap<>(p));
-        for (LogicNode c : node.children) n.children.add(deepCopyNode(c));
-        return n;
+        // copies.get(d) 为当前路径上深度 d 的拷贝，新节点挂到上一层拷贝之下；id 按先序分配
+        java.util.List<LogicNode> copies = new java.util.ArrayList<>();
+        LogicTreeWalker.walk(node, (src, depth) -> {
+            LogicNode n = new LogicNode(src.type, nodeIdCounter[0]++);
+            n.params.putAll(src.params);
+            for (java.util.Map<String,String> p : src.paramList) n.paramList.add(new java.util.LinkedHashMap<>(p));
+            n.filter.putAll(src.filter);
+            for (java.util.Map<String,String> p : src.filterParamList) n.filterParamList.add(new java.util.LinkedHashMap<>(p));
+            if (depth > 0) copies.get(depth - 1).children.add(n);
+            if (depth == copies.size()) copies.add(n); else copies.set(depth, n);
+            return LogicTreeWalker.Action.CONTINUE;
+        });
+        return copies.get(0);
     }
 
-    // 递归展开子树（辅助方法，避免在 main 中使用泛型数组/递归 lambda）
-    public static void expandSubtree(JTree tree, DefaultMutableTreeNode node) {
-        TreePath path = new TreePath(node.getPath());
-        tree.expandPath(path);
-        for (int i = 0; i < node.getChildCount(); i++) {
-            javax.swing.tree.TreeNode tn = node.getChildAt(i);
-            if (tn instanceof DefaultMutableTreeNode) expandSubtree(tree, (DefaultMutableTreeNode) tn);
+    // 展开子树（先序，显式栈遍历）；叶子无需展开，直接跳过
+    public static void expandSubtree(JTree tree, TreePath path) {
+        if (!(path.getLastPathComponent() instanceof LogicNode)) {
+            tree.expandPath(path);
+            return;
         }
+        LogicTreeWalker.walk(path, LogicTreeWalker.PATHS, (p, depth) -> {
+            if (depth > 0 && ((LogicNode) p.getLastPathComponent()).children.isEmpty()) return LogicTreeWalker.Action.SKIP;
+            tree.expandPath(p);
+            return LogicTreeWalker.Action.CONTINUE;
+        });
     }
 
-    // 递归收起子树（先收起子孙，再收起自身）
-    public static void collapseSubtree(JTree tree, DefaultMutableTreeNode node) {
-        for (int i = 0; i < node.getChildCount(); i++) {
-            javax.swing.tree.TreeNode tn = node.getChildAt(i);
-            if (tn instanceof DefaultMutableTreeNode) collapseSubtree(tree, (DefaultMutableTreeNode) tn);
-        }
-        TreePath path = new TreePath(node.getPath());
-        tree.collapsePath(path);
+    /**
+     * 切换大模型模式：行高固定为单行高度并开启 JTree 的 largeModel（只为可见行计算位置，不逐行测量），
+     * 注释不再行内展开而在侧栏显示
+     */
+    static void setLargeModelMode(JTree tree, LogicTreeCellRenderer renderer, JComponent commentPanel, boolean on) {
+        renderer.setInlineComments(!on);
+        tree.setLargeModel(on);
+        // 行高 <= 0 表示由渲染器逐行测量；固定行高留出角标与错误下划线的空间
+        tree.setRowHeight(on ? Math.max(tree.getFontMetrics(tree.getFont()).getHeight() + 4, 16) : 0);
+        commentPanel.setVisible(on);
+        commentPanel.getParent().revalidate();
+        tree.repaint();
     }
 
-
-    // 自定义渲染器
-    static class ErrorHighlightTreeCellRenderer extends DefaultTreeCellRenderer {
-        LogicNode logicRoot;
-        DefaultMutableTreeNode swingRoot;
-        public ErrorHighlightTreeCellRenderer(LogicNode logicRoot, DefaultMutableTreeNode swingRoot) {
-            this.logicRoot = logicRoot;
-            this.swingRoot = swingRoot;
-        }
-        @Override
-        public Component getTreeCellRendererComponent(JTree tree, Object value, boolean sel, boolean expanded, boolean leaf, int row, boolean hasFocus) {
-            Component c = super.getTreeCellRendererComponent(tree, value, sel, expanded, leaf, row, hasFocus);
-            return c;
-        }
-        // 增加字段保存当前渲染节点
-        DefaultMutableTreeNode currentNode;
-        public Component getTreeCellRendererComponent(JTree tree, Object value, boolean sel, boolean expanded, boolean leaf, int row, boolean hasFocus, DefaultMutableTreeNode node) {
-            this.currentNode = node;
-            return getTreeCellRendererComponent(tree, value, sel, expanded, leaf, row, hasFocus);
-        }
-        @Override
-        public void updateUI() {
-            super.updateUI();
+    // 收起子树（后序：先收起子孙，再收起自身）；未展开的子树中不会有展开的节点，直接跳过
+    public static void collapseSubtree(JTree tree, TreePath path) {
+        if (!(path.getLastPathComponent() instanceof LogicNode)) {
+            tree.collapsePath(path);
+            return;
         }
+        LogicTreeWalker.walk(path, LogicTreeWalker.PATHS, new LogicTreeWalker.Visitor<TreePath>() {
+            @Override
+            public LogicTreeWalker.Action enter(TreePath p, int depth) {
+                if (tree.isExpanded(p)) return LogicTreeWalker.Action.CONTINUE;
+                tree.collapsePath(p);
+                return LogicTreeWalker.Action.SKIP;
+            }
+
+            @Override
+            public void exit(TreePath p, int depth) { tree.collapsePath(p); }
+        });
     }
+
     static int[] nodeIdCounter = new int[]{1};
 
     public static void main(String[] args) {
@@ -91,11 +98,33 @@ public class ConstraintVisualizer {
         // 我们自己处理关闭事件以便提示未保存状态并删除临时文件
         frame.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
         frame.setSize(900,600);
-        DefaultMutableTreeNode root = new DefaultMutableTreeNode("(未加载)");
-        JTree tree = new JTree(root);
+        // 树模型直接包装 LogicNode，不再复制一份 Swing 节点树
+        LogicTreeModel treeModel = new LogicTreeModel();
+        JTree tree = new JTree(treeModel);
         tree.setFont(new Font("SansSerif", Font.PLAIN, 18));
         // 右侧有向图可视化面板
         LogicGraphPanel graphPanel = new LogicGraphPanel();
+        // 大模型模式下显示选中节点注释的侧栏
+        JTextArea commentArea = new JTextArea(4, 20);
+        commentArea.setEditable(false);
+        commentArea.setLineWrap(true);
+        commentArea.setWrapStyleWord(true);
+        JScrollPane commentScroll = new JScrollPane(commentArea);
+        commentScroll.setBorder(BorderFactory.createTitledBorder("注释"));
+        commentScroll.setVisible(false);
+        Runnable refreshComments = () -> {
+            LogicNode sel = TreeHelper.findNode(tree.getSelectionPath());
+            commentArea.setText(sel == null ? "" : String.join("\n\n", sel.comments));
+            commentArea.setCaretPosition(0);
+        };
+        tree.addTreeSelectionListener(e -> { if (commentScroll.isVisible()) refreshComments.run(); });
+        // 编辑注释等操作只发出 nodeChanged，选中不变，需单独刷新侧栏
+        treeModel.addTreeModelListener(new javax.swing.event.TreeModelListener() {
+            @Override public void treeNodesChanged(javax.swing.event.TreeModelEvent e) { if (commentScroll.isVisible()) refreshComments.run(); }
+            @Override public void treeNodesInserted(javax.swing.event.TreeModelEvent e) { }
+            @Override public void treeNodesRemoved(javax.swing.event.TreeModelEvent e) { }
+            @Override public void treeStructureChanged(javax.swing.event.TreeModelEvent e) { if (commentScroll.isVisible()) refreshComments.run(); }
+        });
         // 点击JTree空白处取消选中；同时支持点击注释角标切换注释显示
         tree.addMouseListener(new java.awt.event.MouseAdapter() {
             @Override
@@ -108,7 +137,8 @@ public class ConstraintVisualizer {
                 }
                 // 检查是否点击在注释角标区域（右下角小圆点）
                 Rectangle bounds = tree.getPathBounds(path);
-                if (bounds != null) {
+                // 大模型模式下注释在侧栏显示，角标不切换行内注释
+                if (bounds != null && !tree.isLargeModel()) {
                     int size = 10; // 与渲染器保持一致的尺寸
                     int bx = bounds.x + bounds.width - size - 4; // 靠右
                     int by = bounds.y + (bounds.height - size) / 2; // 垂直居中
@@ -116,13 +146,11 @@ public class ConstraintVisualizer {
                     boolean inBadge = (p.x >= bx && p.x <= bx + size && p.y >= by && p.y <= by + size);
                     if (inBadge) {
                         // badge clicked -> 切换该节点注释显示
-                        DefaultMutableTreeNode sel = (DefaultMutableTreeNode)path.getLastPathComponent();
-                        LogicNode ln = TreeHelper.findNode(logicRoot[0], sel, root);
+                        LogicNode ln = TreeHelper.findNode(path);
                         if (ln != null && ln.comments != null && !ln.comments.isEmpty()) {
                             // 仅切换该节点的注释显示并刷新该节点的渲染，避免重建整棵树导致展开状态变化
                             ln.showComments = !ln.showComments;
-                            DefaultTreeModel model = (DefaultTreeModel) tree.getModel();
-                            model.nodeChanged(sel);
+                            treeModel.nodeChanged(path);
                             // 确保界面刷新（仅重绘树即可）
                             tree.repaint();
                         }
@@ -135,111 +163,18 @@ public class ConstraintVisualizer {
                 }
             }
         });
-        // 设置自定义渲染器，需能访问logicRoot[0]
-        tree.setCellRenderer(new DefaultTreeCellRenderer() {
-            @Override
-            public Component getTreeCellRendererComponent(JTree tree, Object value, boolean sel, boolean expanded, boolean leaf, int row, boolean hasFocus) {
-                JLabel c = (JLabel)super.getTreeCellRendererComponent(tree, value, sel, expanded, leaf, row, hasFocus);
-                c.putClientProperty("errorLine", false);
-                c.putClientProperty("hasComments", false);
-                if (value instanceof DefaultMutableTreeNode) {
-                    DefaultMutableTreeNode node = (DefaultMutableTreeNode)value;
-                    Integer nodeId = null;
-                    String s = node.getUserObject().toString();
-                    if (s.startsWith("[")) {
-                        int idx = s.indexOf("]");
-                        if (idx > 1) {
-                            try { nodeId = Integer.parseInt(s.substring(1, idx)); } catch(Exception ex){}
-                        }
-                    }
-                    // 颜色渲染：编号蓝色，关键字紫色，其他黑色
-                    if (s.startsWith("[")) {
-                        int idx = s.indexOf("]");
-                        if (idx > 0) {
-                            String idStr = s.substring(0, idx+1);
-                            String content = s.substring(idx+1).trim();
-                            // 简单 HTML 转义
-                            java.util.function.Function<String,String> esc = (str) -> str.replace("&","&amp;").replace("<","&lt;").replace(">","&gt;");
-                            // 将 content 按空格分词，对关键字上色
-                            String[] parts = content.split(" ");
-                            StringBuilder contentHtml = new StringBuilder();
-                            for (int i=0;i<parts.length;i++) {
-                                String p = parts[i];
-                                String clean = p.replaceAll("[^A-Za-z]", "");
-                                String lower = clean.toLowerCase();
-                                boolean isKeyword = "forall".equals(lower) || "exists".equals(lower) || "and".equals(lower) || "or".equals(lower) || "with".equals(lower) || "in".equals(lower) || "formula".equals(lower) || "implies".equals(lower) || "not".equals(lower) || "rules".equals(lower) || "rule".equals(lower);
-                                if (isKeyword) contentHtml.append("<span style='color:purple;'>").append(esc.apply(p)).append("</span>");
-                                else contentHtml.append("<span style='color:black;'>").append(esc.apply(p)).append("</span>");
-                                if (i<parts.length-1) contentHtml.append(" ");
-                            }
-                            // 查找对应 LogicNode 以决定是否显示注释内容
-                            LogicNode ln = logicRoot[0] == null ? null : TreeHelper.findNode(logicRoot[0], node, root);
-                            StringBuilder html = new StringBuilder();
-                            html.append("<html><span style='color:#3C78FF;'>").append(esc.apply(idStr)).append("</span> ").append(contentHtml.toString());
-                            if (ln != null && ln.comments != null && !ln.comments.isEmpty()) {
-                                c.putClientProperty("hasComments", true);
-                                // 标记当前节点是否处于注释展开状态，用于渲染器在 paintComponent 中水平翻转角标
-                                c.putClientProperty("badgeFlipped", ln.showComments);
-                                // 先在文本末尾增加若干 &nbsp; 作为占位符（放在注释块之前，避免在 block 后产生单独空行）
-                                html.append("&nbsp;&nbsp;&nbsp;&nbsp;");
-                                if (ln.showComments) {
-                                    String commentHtml = esc.apply(ln.getCommentsAsHtml()).replace("\n","<br/>");
-                                    html.append("<div style='font-size:smaller;color:#666;margin-top:6px;'>").append(commentHtml).append("</div>");
-                                }
-                            } else {
-                                // 即便没有注释，也在末尾留一点空隙以保持视觉一致性
-                                html.append("&nbsp;&nbsp;");
-                            }
-                            html.append("</html>");
-                            c.setText(html.toString());
-                        }
-                    }
-                    boolean markError = false;
-                    if (nodeId != null && logic.LogicValidator.errorNodeMap.containsKey(nodeId)) {
-                        markError = true;
-                    } else {
-                        // 如果当前节点折叠且其子孙包含错误，则标红当前节点以提示用户
-                        if (!tree.isExpanded(new TreePath(node.getPath()))) {
-                            if (SwingTreeUtil.swingSubtreeHasError(node)) markError = true;
-                        }
-                    }
-                    if (markError) c.putClientProperty("errorLine", true);
-                }
-                return c;
-            }
-            @Override
-            protected void paintComponent(Graphics g) {
-                super.paintComponent(g);
-                Boolean error = (Boolean)this.getClientProperty("errorLine");
-                if (error != null && error) {
-                    g.setColor(Color.RED);
-                    int y = getHeight() - 2;
-                    g.fillRect(2, y, getWidth()-4, 2);
-                }
-                Boolean hasComments = (Boolean)this.getClientProperty("hasComments");
-                Boolean badgeFlipped = (Boolean)this.getClientProperty("badgeFlipped");
-                if (hasComments != null && hasComments) {
-                    // draw small triangle at right side (fixed vertical center); when badgeFlipped==true draw left-pointing triangle
-                    g.setColor(new Color(255,140,0));
-                    int size = 10;
-                    int x = getWidth() - size - 4; // 靠右，不覆盖文本
-                    int y = (getHeight() - size) / 2; // 垂直居中
-                    int[] ys = new int[] { y, y + size, y + size / 2 };
-                    int[] xs;
-                    if (badgeFlipped != null && badgeFlipped) {
-                        // left-pointing triangle within same bbox
-                        xs = new int[] { x + size, x + size, x };
-                    } else {
-                        // right-pointing
-                        xs = new int[] { x, x, x + size };
-                    }
-                    g.fillPolygon(xs, ys, 3);
-                }
-            }
-        });
+        // 自定义渲染器：按节点缓存着色后的 HTML 与错误标记
+        LogicTreeCellRenderer treeRenderer = new LogicTreeCellRenderer();
+        tree.setCellRenderer(treeRenderer);
         JScrollPane scroll = new JScrollPane(tree);
+        // 树上方的索引搜索：输入即查，选中结果跳到节点
+        LogicSearchPanel searchPanel = new LogicSearchPanel(tree, treeModel);
+        JPanel treePanel = new JPanel(new BorderLayout());
+        treePanel.add(searchPanel, BorderLayout.NORTH);
+        treePanel.add(scroll, BorderLayout.CENTER);
+        treePanel.add(commentScroll, BorderLayout.SOUTH);
         JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT);
-        splitPane.setLeftComponent(scroll);
+        splitPane.setLeftComponent(treePanel);
         splitPane.setRightComponent(graphPanel);
         splitPane.setResizeWeight(0.5);
         frame.add(splitPane, BorderLayout.CENTER);
@@ -252,13 +187,14 @@ public class ConstraintVisualizer {
         JMenuItem open = new JMenuItem("打开XML");
         JMenuItem save = new JMenuItem("保存XML");
         JMenuItem export = new JMenuItem("导出PNG");
-        fileMenu.add(open); fileMenu.add(save); fileMenu.add(export);
+        JMenuItem exportPng = new JMenuItem("导出PNG");
+        fileMenu.add(open); fileMenu.add(save); fileMenu.add(export); fileMenu.add(exportPng);
         bar.add(fileMenu);
         // 编辑菜单，包含撤销
         JMenu editMenu = new JMenu("编辑");
         JMenuItem undoItem = new JMenuItem("撤销");
         undoItem.setEnabled(logic.UndoManager.isUndoAvailable());
-        undoItem.addActionListener(new action.UndoAction(tree, root, logicRoot, nodeIdCounter, graphPanel, status));
+        undoItem.addActionListener(new action.UndoAction(tree, treeModel, logicRoot, nodeIdCounter, graphPanel, status));
         // 订阅 UndoManager 变化以更新菜单项状态
         logic.UndoManager.addListener(() -> {
             // Swing 事件线程更新 UI
@@ -284,34 +220,50 @@ public class ConstraintVisualizer {
         editMenu.add(addItem); editMenu.add(editItem); editMenu.add(delItem); editMenu.add(moveItem);
         editMenu.add(swapSubtreeItem); editMenu.add(swapNodeItem); editMenu.add(copyNodeItem); editMenu.add(renameVarItem);
         editMenu.add(editCommentsItem);
+        // 查找：聚焦搜索框（不在右键菜单中）
+        JMenuItem findItem = new JMenuItem("查找");
+        findItem.setAccelerator(KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_F, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()));
+        findItem.addActionListener(e -> searchPanel.focusField());
+        editMenu.addSeparator();
+        editMenu.add(findItem);
 
-        addItem.addActionListener(new AddNodeAction(frame, tree, root, logicRoot, nodeIdCounter, config, graphPanel, status, logic.LogicValidator.errorNodeMap));
-        editItem.addActionListener(new EditNodeAction(frame, tree, root, logicRoot, config, graphPanel, status, logic.LogicValidator.errorNodeMap));
-        delItem.addActionListener(new DeleteNodeAction(frame, tree, root, logicRoot, graphPanel, status, logic.LogicValidator.errorNodeMap));
-        moveItem.addActionListener(new MoveNodeAction(frame, tree, root, logicRoot, graphPanel, status, logic.LogicValidator.errorNodeMap));
-        swapSubtreeItem.addActionListener(new SwapSubtreeAction(frame, tree, root, logicRoot, graphPanel, status, logic.LogicValidator.errorNodeMap));
-        swapNodeItem.addActionListener(new SwapNodeAction(frame, tree, root, logicRoot, graphPanel, status, logic.LogicValidator.errorNodeMap));
-        copyNodeItem.addActionListener(new CopyNodeAction(frame, tree, root, logicRoot, nodeIdCounter, graphPanel, status, logic.LogicValidator.errorNodeMap));
-        renameVarItem.addActionListener(new action.RenameVarAction(frame, tree, root, logicRoot, graphPanel, status, logic.LogicValidator.errorNodeMap));
-        editCommentsItem.addActionListener(new action.EditCommentsAction(frame, tree, root, logicRoot, graphPanel, status, logic.LogicValidator.errorNodeMap));
+        addItem.addActionListener(new AddNodeAction(frame, tree, treeModel, logicRoot, nodeIdCounter, config, graphPanel, status, logic.LogicValidator.errorNodeMap));
+        editItem.addActionListener(new EditNodeAction(frame, tree, treeModel, logicRoot, config, graphPanel, status, logic.LogicValidator.errorNodeMap));
+        delItem.addActionListener(new DeleteNodeAction(frame, tree, treeModel, logicRoot, graphPanel, status, logic.LogicValidator.errorNodeMap));
+        moveItem.addActionListener(new MoveNodeAction(frame, tree, treeModel, logicRoot, graphPanel, status, logic.LogicValidator.errorNodeMap));
+        swapSubtreeItem.addActionListener(new SwapSubtreeAction(frame, tree, treeModel, logicRoot, graphPanel, status, logic.LogicValidator.errorNodeMap));
+        swapNodeItem.addActionListener(new SwapNodeAction(frame, tree, treeModel, logicRoot, graphPanel, status, logic.LogicValidator.errorNodeMap));
+        copyNodeItem.addActionListener(new CopyNodeAction(frame, tree, treeModel, logicRoot, nodeIdCounter, graphPanel, status, logic.LogicValidator.errorNodeMap));
+        renameVarItem.addActionListener(new action.RenameVarAction(frame, tree, treeModel, logicRoot, graphPanel, status, logic.LogicValidator.errorNodeMap));
+        editCommentsItem.addActionListener(new action.EditCommentsAction(frame, tree, treeModel, logicRoot, graphPanel, status, logic.LogicValidator.errorNodeMap));
 
         // 新增视图菜单，包含展开/收起操作
         JMenu viewMenu = new JMenu("视图");
         JMenuItem expandItem = new JMenuItem("展开");
         JMenuItem collapseItem = new JMenuItem("收起");
         viewMenu.add(expandItem); viewMenu.add(collapseItem);
+        // 大规则集浏览时开启：图按块缓存，平移/缩放不再重绘全部节点
+        JCheckBoxMenuItem tileCacheItem = new JCheckBoxMenuItem("分块缓存渲染");
+        tileCacheItem.addActionListener(e -> graphPanel.setTileCacheEnabled(tileCacheItem.isSelected()));
+        // 百万节点级规则集：树固定行高、按可见行映射，注释移到侧栏
+        JCheckBoxMenuItem largeModelItem = new JCheckBoxMenuItem("大模型模式");
+        largeModelItem.addActionListener(e -> {
+            setLargeModelMode(tree, treeRenderer, commentScroll, largeModelItem.isSelected());
+            if (largeModelItem.isSelected()) refreshComments.run();
+        });
+        viewMenu.addSeparator();
+        viewMenu.add(tileCacheItem);
+        viewMenu.add(largeModelItem);
         bar.add(viewMenu);
         expandItem.addActionListener(e -> {
             TreePath path = tree.getSelectionPath();
             if (path == null) return;
-            DefaultMutableTreeNode sel = (DefaultMutableTreeNode) path.getLastPathComponent();
-            ConstraintVisualizer.expandSubtree(tree, sel);
+            ConstraintVisualizer.expandSubtree(tree, path);
         });
         collapseItem.addActionListener(e -> {
             TreePath path = tree.getSelectionPath();
             if (path == null) return;
-            DefaultMutableTreeNode sel = (DefaultMutableTreeNode) path.getLastPathComponent();
-            ConstraintVisualizer.collapseSubtree(tree, sel);
+            ConstraintVisualizer.collapseSubtree(tree, path);
         });
 
         // 构建节点右键菜单：包含编辑菜单和视图菜单中的操作（除了撤回）
@@ -349,35 +301,27 @@ public class ConstraintVisualizer {
             }
         });
 
+        // 单击右侧图中的节点时选中左侧对应树节点（此时不重新缩放/居中图）
+        final boolean[] selectingFromGraph = {false};
+        graphPanel.addNodeClickListener(nodeId -> {
+            selectingFromGraph[0] = true;
+            try {
+                SwingTreeUtil.selectNodeById(tree, nodeId);
+            } finally {
+                selectingFromGraph[0] = false;
+            }
+        });
         // 选中树节点时高亮右侧图节点
         tree.addTreeSelectionListener(e -> {
             TreePath path = tree.getSelectionPath();
             if (path != null && logicRoot[0] != null) {
-                DefaultMutableTreeNode sel = (DefaultMutableTreeNode)path.getLastPathComponent();
-                LogicNode ln = TreeHelper.findNode(logicRoot[0], sel, root);
+                LogicNode ln = TreeHelper.findNode(path);
                 if (ln != null) {
                     graphPanel.setHighlightNodeId(ln.nodeId);
-                    // 设置缩放倍率为 1.5 并同步重绘（确保 nodeBounds 在新 scale 下已更新），然后居中选中节点
-                    graphPanel.setScale(1.5);
-                    // 强制立刻绘制以便 nodeBounds 在后续计算中是最新的（避免 repaint 异步导致使用旧布局）
-                    try {
-                        // 只有在组件大小可用时才同步绘制
-                        if (graphPanel.getWidth() > 0 && graphPanel.getHeight() > 0) {
-                            graphPanel.paintImmediately(0, 0, graphPanel.getWidth(), graphPanel.getHeight());
-                        }
-                    } catch (Exception ex) {
-                        // paintImmediately 在极少数情况下可能抛出异常，忽略以防止影响主流程
-                    }
-                    // 平移图片中心到该节点（使用最新的 scale）
-                    Rectangle rect = graphPanel.getNodeBounds(ln.nodeId);
-                    if (rect != null) {
-                        int cx = rect.x + rect.width/2;
-                        int cy = rect.y + rect.height/2;
-                        int viewW = graphPanel.getVisibleRect().width;
-                        int viewH = graphPanel.getVisibleRect().height;
-                        int targetOffsetX = (int)(viewW/2 - cx * graphPanel.getScale());
-                        int targetOffsetY = (int)(viewH/2 - cy * graphPanel.getScale());
-                        graphPanel.setOffset(targetOffsetX, targetOffsetY);
+                    if (!selectingFromGraph[0]) {
+                        // 设置缩放倍率为 1.5，然后居中选中节点（布局已缓存，无需先同步绘制）
+                        graphPanel.setScale(1.5);
+                        graphPanel.centerOnNode(ln.nodeId);
                     }
                 } else {
                     graphPanel.setHighlightNodeId(null);
@@ -386,7 +330,7 @@ public class ConstraintVisualizer {
                 graphPanel.setHighlightNodeId(null);
             }
         });
-        open.addActionListener(new OpenXmlAction(frame, tree, root, logicRoot, nodeIdCounter, graphPanel, status));
+        open.addActionListener(new OpenXmlAction(frame, tree, treeModel, logicRoot, nodeIdCounter, graphPanel, status));
         save.addActionListener(new SaveXmlAction(frame, logicRoot, status));
 
         // 导出SVG
@@ -397,8 +341,10 @@ public class ConstraintVisualizer {
                 try {
                     logic.LogicNode logic = logicRoot[0];
                     LogicGraphSvgExporter svgExporter = new LogicGraphSvgExporter();
-                    String svg = svgExporter.exportSvg(logic);
-                    java.nio.file.Files.write(fc.getSelectedFile().toPath(), svg.getBytes("UTF-8"));
+                    // 边生成边写文件，大图不在内存中保留整份 SVG
+                    try (java.io.Writer w = java.nio.file.Files.newBufferedWriter(fc.getSelectedFile().toPath(), java.nio.charset.StandardCharsets.UTF_8)) {
+                        svgExporter.exportSvg(logic, w);
+                    }
                     status.setText("SVG导出成功");
                 } catch (Exception ex) {
                     status.setText("SVG导出失败: "+ex.getMessage());
@@ -406,6 +352,38 @@ public class ConstraintVisualizer {
             }
         });
 
+        // 导出PNG：按条带绘制并流式压缩，后台线程写文件
+        exportPng.addActionListener(e -> {
+            JFileChooser fc = new JFileChooser(System.getProperty("user.dir"));
+            if (fc.showSaveDialog(frame)!=JFileChooser.APPROVE_OPTION) return;
+            LogicGraphPngExporter pngExporter = graphPanel.createPngExporter();
+            if (pngExporter == null) return;
+            java.io.File file = fc.getSelectedFile();
+            exportPng.setEnabled(false);
+            status.setText("正在导出PNG...");
+            new SwingWorker<Void, Void>() {
+                @Override
+                protected Void doInBackground() throws Exception {
+                    try (java.io.OutputStream out = new java.io.BufferedOutputStream(new java.io.FileOutputStream(file))) {
+                        pngExporter.write(out);
+                    }
+                    return null;
+                }
+
+                @Override
+                protected void done() {
+                    exportPng.setEnabled(true);
+                    try {
+                        get();
+                        status.setText("PNG导出成功");
+                    } catch (Exception ex) {
+                        Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                        status.setText("PNG导出失败: "+cause.getMessage());
+                    }
+                }
+            }.execute();
+        });
+
         // 预加载空的 XML 内容
         try {
             DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
@@ -416,10 +394,7 @@ public class ConstraintVisualizer {
             
             LogicNode temp = logic.LogicXmlUtil.parseXml(rootElement, nodeIdCounter);
             logicRoot[0] = temp;
-            root.setUserObject(logicRoot[0].toString());
-            root.removeAllChildren();
-            logic.SwingTreeUtil.buildSwingTree(logicRoot[0], root);
-            ((DefaultTreeModel)tree.getModel()).reload();
+            treeModel.setRoot(logicRoot[0]);
             graphPanel.setLogicRoot(logicRoot[0]);
             status.setText("已预加载空约束公式");
         } catch (Exception ex) {
@@ -0,0 +1,312 @@
+package logic;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+
+/**
+ * 命令行批量校验（无界面，不初始化 AWT）
+ * 用法：java -cp bin logic.LogicBatchValidator [-w] [-j 线程数] [-o 报告文件] 文件或目录...
+ * - 目录递归收集其中的 .xml 文件；文件按路径排序，各文件在 ForkJoinPool 上并行解析、校验并生成报告行，
+ *   同时在途的文件数有上限（线程数的若干倍），写出报告后不保留文件的树
+ * - 报告为 JSON lines（默认写到标准输出），每条诊断一行：file、nodeId、path、code、message；
+ *   无法读取或解析的文件输出一行 file + error。按文件顺序、文件内按 nodeId 输出，结果与线程数无关
+ * - 退出码：0 无错误，1 存在校验错误，2 存在无法解析的文件或参数错误
+ * - -w 为监视模式（见 LogicWatchValidator）：常驻内存，只重新校验变化的文件并输出诊断的增减
+ */
+public class LogicBatchValidator {
+    // 每个线程同时在途的文件数（先完成的文件等待按序写出时占用内存）
+    private static final int IN_FLIGHT_PER_THREAD = 4;
+
+    // 单个文件的结果：diagnostics 为 null 时 error 为解析失败原因
+    // 批量模式只保留报告行（report），root 为 null；监视模式保留 root 供之后计算诊断增减
+    static final class FileResult {
+        final Path file;
+        final LogicNode root;
+        final LogicDiagnostics diagnostics;
+        final String error;
+        final String report;
+
+        FileResult(Path file, LogicNode root, LogicDiagnostics diagnostics, String error, String report) {
+            this.file = file;
+            this.root = root;
+            this.diagnostics = diagnostics;
+            this.error = error;
+            this.report = report;
+        }
+
+        int errorCount() {
+            if (diagnostics == null) return 0;
+            int n = 0;
+            for (List<LogicDiagnostic> l : diagnostics.asMap().values()) n += l.size();
+            return n;
+        }
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int threads = Runtime.getRuntime().availableProcessors();
+        String out = null;
+        boolean watch = false;
+        List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            if ((a.equals("-j") || a.equals("-o")) && i + 1 < args.length) {
+                String v = args[++i];
+                if (a.equals("-o")) {
+                    out = v;
+                    continue;
+                }
+                try {
+                    threads = Integer.parseInt(v);
+                } catch (NumberFormatException ex) {
+                    threads = 0;
+                }
+                if (threads < 1) {
+                    System.err.println("无效的线程数: " + v);
+                    System.exit(2);
+                }
+            } else if (a.equals("-w")) {
+                watch = true;
+            } else if (a.equals("-h") || a.equals("--help")) {
+                usage();
+                System.exit(0);
+            } else {
+                inputs.add(a);
+            }
+        }
+        if (inputs.isEmpty()) {
+            usage();
+            System.exit(2);
+        }
+        int code;
+        try (Writer w = out == null
+                ? new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8))
+                : Files.newBufferedWriter(Paths.get(out), StandardCharsets.UTF_8)) {
+            code = watch ? new LogicWatchValidator(threads, w).run(inputs) : run(inputs, threads, w);
+        } catch (IOException ex) {
+            System.err.println("写入报告失败: " + ex.getMessage());
+            code = 2;
+        }
+        System.exit(code);
+    }
+
+    private static void usage() {
+        System.err.println("用法: java -cp bin logic.LogicBatchValidator [-w] [-j 线程数] [-o 报告文件] 文件或目录...");
+    }
+
+    /**
+     * 校验 inputs 中的文件与目录并把报告写入 report，返回退出码
+     */
+    public static int run(List<String> inputs, int threads, Writer report) throws IOException {
+        List<Path> files = new ArrayList<>();
+        boolean missing = false;
+        for (String in : inputs) {
+            Path p = Paths.get(in);
+            if (Files.isDirectory(p)) {
+                collectXmlFiles(p, files);
+            } else if (Files.isRegularFile(p)) {
+                files.add(p);
+            } else {
+                System.err.println("文件不存在: " + in);
+                missing = true;
+            }
+        }
+        Collections.sort(files);
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        int errors = 0, badFiles = 0, failedFiles = 0;
+        try {
+            // 按提交顺序取结果，输出顺序固定；每写出一个文件再提交下一个，在途文件数不超过 window
+            int window = threads * IN_FLIGHT_PER_THREAD;
+            ArrayDeque<ForkJoinTask<FileResult>> tasks = new ArrayDeque<>(window);
+            int next = 0;
+            while (next < files.size() || !tasks.isEmpty()) {
+                while (next < files.size() && tasks.size() < window) {
+                    Path f = files.get(next++);
+                    tasks.add(pool.submit(() -> check(f, false)));
+                }
+                FileResult r = tasks.poll().join();
+                report.write(r.report);
+                if (r.error != null) failedFiles++;
+                else if (!r.diagnostics.isEmpty()) badFiles++;
+                errors += r.errorCount();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        report.flush();
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        System.err.println("已校验 " + files.size() + " 个文件（" + ms + " ms）：" + errors + " 条错误分布在 "
+            + badFiles + " 个文件中，" + failedFiles + " 个文件无法解析");
+        if (missing || failedFiles > 0) return 2;
+        return errors > 0 ? 1 : 0;
+    }
+
+    static void collectXmlFiles(Path dir, List<Path> out) throws IOException {
+        try (Stream<Path> s = Files.walk(dir)) {
+            s.filter(p -> Files.isRegularFile(p) && p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".xml"))
+                .forEach(out::add);
+        }
+    }
+
+    /**
+     * 解析并校验单个文件（在工作线程上执行，不抛出异常）
+     * @param keepTree true 时保留树（监视模式），false 时在此生成报告行（含节点路径）并丢弃树
+     */
+    static FileResult check(Path file, boolean keepTree) {
+        LogicNode root;
+        try {
+            root = parse(file);
+        } catch (XMLStreamException ex) {
+            return failed(file, parseError(ex), keepTree);
+        } catch (Exception ex) {
+            return failed(file, ex.getMessage() != null ? ex.getMessage() : ex.toString(), keepTree);
+        } catch (StackOverflowError | OutOfMemoryError ex) {
+            return failed(file, ex.toString(), keepTree);
+        }
+        LogicDiagnostics diagnostics = new LogicValidator().validate(root);
+        if (keepTree) return new FileResult(file, root, diagnostics, null, null);
+        StringWriter w = new StringWriter();
+        try {
+            writeDiagnostics(file.toString(), root, diagnostics, w);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return new FileResult(file, null, diagnostics, null, w.toString());
+    }
+
+    private static FileResult failed(Path file, String error, boolean keepTree) {
+        if (keepTree) return new FileResult(file, null, null, error, null);
+        StringWriter w = new StringWriter();
+        try {
+            writeError(null, file.toString(), error, w);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return new FileResult(file, null, null, error, w.toString());
+    }
+
+    // 与打开文件相同的方式解析（StAX，不建立 DOM），nodeId 从 1 开始
+    static LogicNode parse(Path file) throws IOException, XMLStreamException {
+        return LogicXmlUtil.parseXml(file.toFile(), new int[]{1});
+    }
+
+    // 解析错误的描述：行列位置 + 原因（去掉 StAX 消息中自带的位置前缀）
+    static String parseError(XMLStreamException ex) {
+        String msg = ex.getMessage() != null ? ex.getMessage() : ex.toString();
+        int i = msg.indexOf("Message: ");
+        if (i >= 0) msg = msg.substring(i + "Message: ".length());
+        Location loc = ex.getLocation();
+        return loc == null ? msg : "行 " + loc.getLineNumber() + " 列 " + loc.getColumnNumber() + ": " + msg;
+    }
+
+    // 文件的全部诊断行，按 nodeId 顺序
+    private static void writeDiagnostics(String file, LogicNode root, LogicDiagnostics diagnostics, Writer w) throws IOException {
+        if (diagnostics.isEmpty()) return;
+        Map<Integer, String> paths = nodePaths(root, diagnostics.nodeIds());
+        List<Integer> ids = new ArrayList<>(diagnostics.nodeIds());
+        Collections.sort(ids);
+        for (int id : ids) {
+            for (LogicDiagnostic d : diagnostics.get(id)) writeDiagnostic(null, file, id, paths.get(id), d, w);
+        }
+    }
+
+    // 无法解析的文件；event 不为 null 时作为首个字段输出（监视模式）
+    static void writeError(String event, String file, String error, Writer w) throws IOException {
+        writeStart(event, w);
+        writeJsonString(file, w);
+        w.write(",\"error\":");
+        writeJsonString(error, w);
+        w.write("}\n");
+    }
+
+    static void writeDiagnostic(String event, String file, int nodeId, String path, LogicDiagnostic d, Writer w) throws IOException {
+        writeStart(event, w);
+        writeJsonString(file, w);
+        w.write(",\"nodeId\":");
+        w.write(Integer.toString(nodeId));
+        w.write(",\"path\":");
+        writeJsonString(path, w);
+        w.write(",\"code\":\"");
+        w.write(d.getCode().name());
+        w.write("\",\"message\":");
+        writeJsonString(d.getMessage(), w);
+        w.write("}\n");
+    }
+
+    private static void writeStart(String event, Writer w) throws IOException {
+        w.write('{');
+        if (event != null) {
+            w.write("\"event\":");
+            writeJsonString(event, w);
+            w.write(',');
+        }
+        w.write("\"file\":");
+    }
+
+    /**
+     * ids 中各节点在文档中的位置，形如 /rules/rule[2]/forall[1]（与 XPath 相同：标签 + 同名兄弟元素中的序号，从 1 开始）
+     */
+    static Map<Integer, String> nodePaths(LogicNode root, Set<Integer> ids) {
+        Map<Integer, String> out = new HashMap<>();
+        // 各层：节点、其在同名兄弟中的序号、其子节点已出现的各标签计数
+        List<LogicNode> nodes = new ArrayList<>();
+        List<Integer> index = new ArrayList<>();
+        List<Map<String, Integer>> tagCounts = new ArrayList<>();
+        LogicTreeWalker.walk(root, (n, depth) -> {
+            String tag = tagOf(n);
+            int i = 1;
+            if (depth > 0) i = tagCounts.get(depth - 1).merge(tag, 1, Integer::sum);
+            if (depth == nodes.size()) {
+                nodes.add(n);
+                index.add(i);
+                tagCounts.add(new HashMap<>());
+            } else {
+                nodes.set(depth, n);
+                index.set(depth, i);
+                tagCounts.get(depth).clear();
+            }
+            if (ids.contains(n.nodeId)) {
+                StringBuilder sb = new StringBuilder();
+                for (int d = 0; d <= depth; d++) {
+                    sb.append('/').append(tagOf(nodes.get(d)));
+                    if (d > 0) sb.append('[').append(index.get(d)).append(']');
+                }
+                out.put(n.nodeId, sb.toString());
+            }
+            return LogicTreeWalker.Action.CONTINUE;
+        });
+        return out;
+    }
+
+    private static String tagOf(LogicNode n) {
+        if (n.type == LogicNode.NodeType.UNKNOWN) return n.unknownTag != null ? n.unknownTag : "unknown";
+        return n.type.name().toLowerCase(Locale.ROOT);
+    }
+
+    static void writeJsonString(String s, Writer w) throws IOException {
+        w.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': w.write("\\\""); break;
+                case '\\': w.write("\\\\"); break;
+                case '\n': w.write("\\n"); break;
+                case '\r': w.write("\\r"); break;
+                case '\t': w.write("\\t"); break;
+                default:
+                    if (c < 0x20) w.write(String.format("\\u%04x", (int) c));
+                    else w.write(c);
+            }
+        }
+        w.write('"');
+    }
+}
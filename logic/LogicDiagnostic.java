@@ -0,0 +1,67 @@
+package logic;
+
+/**
+ * 单条校验诊断：类型码 + 参数（变量名或节点类型名，无参数时为 null），不可变
+ * - 文本由类型码模板生成，与原先拼接的错误描述一致
+ */
+public final class LogicDiagnostic {
+
+    public enum Code {
+        ROOT_NOT_RULES("根节点只能是RULES类型"),
+        RULES_NOT_ROOT("rules 节点必须位于根位置"),
+        RULE_PARENT("rule 的父节点必须是 rules"),
+        QUANTIFIER_PARAMS("量词节点缺少 var 或 in 参数"),
+        QUANTIFIER_CHILDREN("量词节点必须有且仅有一个子公式"),
+        BFUNC_NAME("bfunc 缺少 name 参数"),
+        BFUNC_CHILDREN("bfunc不能有子公式"),
+        IMPLIES_CHILDREN("%s节点必须有2个子公式"),
+        NOT_CHILDREN("not 节点必须有1个子公式"),
+        FORMULA_PARENT("formula 的父节点必须是 rule"),
+        FORMULA_CHILDREN("FORMULA类型的子节点不能超过1个"),
+        JUNCTION_CHILDREN("%s节点必须有子公式"),
+        UNKNOWN_PARENT("unknown 节点的父节点必须是 rule 或 rules"),
+        PARAM_LIST_NOT_ALLOWED("%s类型不允许有参数列表"),
+        VAR_REDEFINED("变量重复定义: %s"),
+        VAR_UNDEFINED("使用未定义的变量: %s"),
+        VAR_UNUSED("定义的变量未被使用: %s");
+
+        private final String template;
+
+        Code(String template) { this.template = template; }
+    }
+
+    private final Code code;
+    private final String arg;
+
+    public LogicDiagnostic(Code code, String arg) {
+        this.code = code;
+        this.arg = arg;
+    }
+
+    public LogicDiagnostic(Code code) {
+        this(code, null);
+    }
+
+    public Code getCode() { return code; }
+
+    public String getArg() { return arg; }
+
+    public String getMessage() {
+        return arg == null ? code.template : code.template.replace("%s", arg);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof LogicDiagnostic)) return false;
+        LogicDiagnostic d = (LogicDiagnostic) o;
+        return code == d.code && java.util.Objects.equals(arg, d.arg);
+    }
+
+    @Override
+    public int hashCode() {
+        return code.hashCode() * 31 + java.util.Objects.hashCode(arg);
+    }
+
+    @Override
+    public String toString() { return getMessage(); }
+}
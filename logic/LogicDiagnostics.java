@@ -0,0 +1,59 @@
+package logic;
+
+import java.util.*;
+
+/**
+ * 一次校验的结果，不可变，可在线程间传递
+ * - nodeId -> 该节点的诊断列表（按发现顺序）
+ * - nodeId -> 子孙（不含自身）中有错误的节点数，只记录大于 0 的节点
+ */
+public final class LogicDiagnostics {
+    public static final LogicDiagnostics EMPTY = new LogicDiagnostics(Collections.emptyMap(), Collections.emptyMap());
+
+    private final Map<Integer, List<LogicDiagnostic>> byNode;
+    private final Map<Integer, Integer> errorsBelow;
+
+    LogicDiagnostics(Map<Integer, List<LogicDiagnostic>> byNode, Map<Integer, Integer> errorsBelow) {
+        Map<Integer, List<LogicDiagnostic>> copy = new HashMap<>(byNode.size() * 4 / 3 + 1);
+        for (Map.Entry<Integer, List<LogicDiagnostic>> e : byNode.entrySet()) copy.put(e.getKey(), List.copyOf(e.getValue()));
+        this.byNode = Collections.unmodifiableMap(copy);
+        this.errorsBelow = Collections.unmodifiableMap(new HashMap<>(errorsBelow));
+    }
+
+    public boolean isEmpty() { return byNode.isEmpty(); }
+
+    // 有错误的节点数
+    public int size() { return byNode.size(); }
+
+    public Set<Integer> nodeIds() { return byNode.keySet(); }
+
+    public Map<Integer, List<LogicDiagnostic>> asMap() { return byNode; }
+
+    // 节点的诊断列表，无错误时为空列表
+    public List<LogicDiagnostic> get(int nodeId) {
+        return byNode.getOrDefault(nodeId, Collections.emptyList());
+    }
+
+    // 节点的错误描述（多条以 "; " 连接），无错误时为 null
+    public String message(int nodeId) {
+        List<LogicDiagnostic> list = byNode.get(nodeId);
+        return list == null ? null : joinMessages(list);
+    }
+
+    // 子孙中有错误的节点数
+    public int errorsBelow(int nodeId) {
+        return errorsBelow.getOrDefault(nodeId, 0);
+    }
+
+    public Map<Integer, Integer> errorsBelowMap() { return errorsBelow; }
+
+    static String joinMessages(List<LogicDiagnostic> list) {
+        if (list.size() == 1) return list.get(0).getMessage();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < list.size(); i++) {
+            if (i > 0) sb.append("; ");
+            sb.append(list.get(i).getMessage());
+        }
+        return sb.toString();
+    }
+}
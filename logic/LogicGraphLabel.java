@@ -0,0 +1,110 @@
+package logic;
+import java.awt.*;
+import java.util.*;
+
+/**
+ * 图中节点文本的预排版结果（不可变）
+ * - 文本按空格切分为词，关键字判定、着色与每个词的 x 偏移在构建时一次算好
+ * - 绑定构建时的字体，文本或字体变化时需重建（isFor 判断）
+ * - draw 只做 setColor / drawString，不再分词、测量或创建对象
+ */
+public final class LogicGraphLabel {
+    /** 节点编号颜色（蓝色，同选中高亮） */
+    public static final Color ID_COLOR = new Color(60, 120, 255);
+    /** 关键字颜色（紫色） */
+    public static final Color KEYWORD_COLOR = new Color(128, 0, 128);
+    // 关键字（比较前去掉非字母字符并转小写）
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+        "forall", "exists", "and", "or", "with", "in", "formula", "implies", "not"));
+
+    private final String text;
+    private final Font font;
+    private final String idText;
+    private final String[] words;
+    private final boolean[] keyword;
+    // 各词相对文本起点的 x 偏移
+    private final int[] wordX;
+    private final int textWidth;
+    private final int runWidth;
+    private final int ascent, descent;
+
+    private LogicGraphLabel(String text, Font font, String idText, String[] words, boolean[] keyword, int[] wordX,
+                            int textWidth, int runWidth, int ascent, int descent) {
+        this.text = text;
+        this.font = font;
+        this.idText = idText;
+        this.words = words;
+        this.keyword = keyword;
+        this.wordX = wordX;
+        this.textWidth = textWidth;
+        this.runWidth = runWidth;
+        this.ascent = ascent;
+        this.descent = descent;
+    }
+
+    /**
+     * 按给定字体排版节点文本
+     * @param nodeId 节点编号（文本以 "[nodeId]" 开头时单独着色）
+     * @param text 节点文本（LogicNode.toString）
+     */
+    public static LogicGraphLabel create(int nodeId, String text, FontMetrics fm) {
+        String idText = "[" + nodeId + "]";
+        String[] words = splitContent(text, nodeId);
+        boolean[] keyword = new boolean[words.length];
+        int[] wordX = new int[words.length];
+        int idWidth = fm.stringWidth(idText);
+        int space = fm.stringWidth(" ");
+        int curX = idWidth + 4;
+        for (int i = 0; i < words.length; i++) {
+            keyword[i] = isKeyword(words[i]);
+            wordX[i] = curX;
+            curX += fm.stringWidth(words[i]) + space;
+        }
+        return new LogicGraphLabel(text, fm.getFont(), idText, words, keyword, wordX,
+            fm.stringWidth(text), curX, fm.getAscent(), fm.getDescent());
+    }
+
+    /** 去掉开头的 "[nodeId]" 后按空格切分的词（与图中、SVG 中的分词一致） */
+    public static String[] splitContent(String text, int nodeId) {
+        String idText = "[" + nodeId + "]";
+        String content = text.startsWith(idText) ? text.substring(idText.length()).trim() : text;
+        return content.split(" ");
+    }
+
+    /** 词（忽略非字母字符与大小写）是否为关键字 */
+    public static boolean isKeyword(String word) {
+        StringBuilder sb = new StringBuilder(word.length());
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z')) sb.append(Character.toLowerCase(c));
+        }
+        return KEYWORDS.contains(sb.toString());
+    }
+
+    /** 是否可直接用于给定文本与字体 */
+    public boolean isFor(String text, Font font) {
+        return this.text.equals(text) && this.font.equals(font);
+    }
+
+    public String getText() { return text; }
+    /** 整段文本的宽度（用于节点尺寸） */
+    public int getTextWidth() { return textWidth; }
+
+    /** 在顶边为 y、高为 height 的矩形内居中绘制时，文字的纵向范围是否与 [top, bottom) 相交 */
+    public boolean intersectsRows(int y, int height, int top, int bottom) {
+        int ty = y + (height + ascent - descent) / 2;
+        return ty - ascent < bottom && ty + descent > top;
+    }
+
+    /** 在矩形内居中绘制：编号蓝色，关键字紫色，其余黑色 */
+    public void draw(Graphics2D g2, int x, int y, int width, int height) {
+        int tx = x + (width - runWidth) / 2;
+        int ty = y + (height + ascent - descent) / 2;
+        g2.setColor(ID_COLOR);
+        g2.drawString(idText, tx, ty);
+        for (int i = 0; i < words.length; i++) {
+            g2.setColor(keyword[i] ? KEYWORD_COLOR : Color.BLACK);
+            g2.drawString(words[i], tx + wordX[i], ty);
+        }
+    }
+}
@@ -7,26 +7,88 @@ import java.util.*;
  * 逻辑树有向图可视化面板
  * - 自动布局树结构为有向图
  * - 支持高亮选中节点
+ * - 布局结果缓存，仅在 setLogicRoot / modelChanged / nodesChanged 时失效，平移与缩放只改变绘制变换
+ * - 重新布局以上一次完整布局为记忆：nodesChanged 报告的节点之外不再生成文本与测量，
+ *   子树宽度只沿变化节点的祖先链重算
+ * - 绘制时通过空间索引只处理与当前裁剪区域相交的节点和连线
+ * - 按 nodeId 查询节点矩形与按坐标点击命中均为常数/局部查询
+ * - 节点文本的分词、着色与测量结果（LogicGraphLabel）随布局保存，只在文本或字体变化时重建
+ * - 可选分块缓存渲染（LogicGraphTileCache）：平移只贴已栅格化的图块，模型变化只重绘受影响的图块
+ * - 大树（节点数达到阈值）在后台线程布局，完成前先显示顶层预览；模型再次变化时旧的后台结果作废。
+ *   后台只处理 EDT 上生成的布局快照（展平的结构与节点文本），不读取正在编辑的 LogicNode
  */
 public class LogicGraphPanel extends JPanel {
-    // 获取指定nodeId的节点矩形（最新一次paint后有效）
+    // 获取指定nodeId的节点矩形（布局坐标：根节点中心位于 x=0）
     public Rectangle getNodeBounds(int nodeId) {
-        for (Map.Entry<LogicNode, Rectangle> e : nodeBounds.entrySet()) {
-            if (e.getKey().nodeId == nodeId) return e.getValue();
+        LogicTreeLayout.Result layout = ensureLayout();
+        return layout == null ? null : layout.getBoundsById(nodeId);
+    }
+
+    // 屏幕坐标处的节点 id（基于布局空间索引），未命中返回 null
+    public Integer getNodeIdAt(int screenX, int screenY) {
+        LogicLayoutIndex index = ensureLayoutIndex();
+        if (index == null) return null;
+        int mx = (int)Math.floor((screenX - offsetX - getWidth() / 2) / scale);
+        int my = (int)Math.floor((screenY - offsetY) / scale);
+        int slot = index.nodeAt(mx, my);
+        return slot < 0 ? null : index.getLayout().getNode(slot).nodeId;
+    }
+
+    // 基于当前完整布局的 PNG 导出器（可在后台线程写出）；无模型时返回 null
+    public LogicGraphPngExporter createPngExporter() {
+        if (ensureLayout() == null) return null;
+        if (layoutPending) {
+            // 导出需要完整布局：不再等待后台结果，直接在此计算
+            invalidateLayout();
+            install(computeLayout(root, getFontMetrics(getFont()), Integer.MAX_VALUE, () -> false));
+            repaint();
         }
-        return null;
+        LogicGraphPngExporter exporter = new LogicGraphPngExporter(layout, labels, getFont());
+        exporter.setBackground(getBackground());
+        return exporter;
     }
+
+    // 单击图中节点时回调其 nodeId
+    public void addNodeClickListener(java.util.function.IntConsumer l) {
+        if (l != null) nodeClickListeners.add(l);
+    }
+    // 节点数达到该值时改为后台布局
+    private static final int BACKGROUND_LAYOUT_THRESHOLD = 20000;
+    // 已有完整布局且变化节点已知时，增量布局不再测量未变化的节点，同步执行的上限相应放宽
+    private static final int INCREMENTAL_LAYOUT_THRESHOLD = 200000;
+    // 后台布局完成前预览的节点上限（按整层截取）
+    private static final int PREVIEW_NODE_LIMIT = 2000;
+
     private LogicNode root;
     private Integer highlightNodeId = null;
-    private Map<LogicNode, Rectangle> nodeBounds = new HashMap<>();
-    private Map<LogicNode, Dimension> nodeSizes = new HashMap<>();
+    private LogicTreeLayout.Result layout = null;
+    private LogicLayoutIndex layoutIndex = null;
+    // 与 layout 的 slot 对应的文本排版
+    private LogicGraphLabel[] labels = new LogicGraphLabel[0];
+    // 最近一次完整布局及其排版，作为重新布局的记忆（跨失效保留，字体变化时丢弃）
+    private LogicTreeLayout.Result lastFullLayout = null;
+    private LogicGraphLabel[] lastFullLabels = new LogicGraphLabel[0];
+    // 自 lastFullLayout 以来文本可能变化的节点；null 表示未知，重新布局时逐个节点重新生成文本
+    private Set<LogicNode> changedNodes = null;
+    // 每次布局失效加一，后台结果只在代数未变时采用
+    private int layoutGeneration = 0;
+    private SwingWorker<LayoutSnapshot, Void> layoutWorker = null;
+    // 当前显示的是顶层预览，完整布局仍在后台计算
+    private boolean layoutPending = false;
+    // 预览期间请求居中的节点，完整布局就绪后再居中
+    private Integer pendingCenterNodeId = null;
     private int vGap = 40;
     private int hGap = 24;
+    private final LogicTreeLayout layoutEngine = new LogicTreeLayout(hGap, vGap);
+    private final LogicGraphRenderer renderer = new LogicGraphRenderer();
+    // 分块缓存，null 表示直接绘制
+    private LogicGraphTileCache tileCache = null;
     // 缩放与平移
     private double scale = 1.0;
     private int offsetX = 0, offsetY = 0;
     private int dragStartX = 0, dragStartY = 0;
     private boolean dragging = false;
+    private final java.util.List<java.util.function.IntConsumer> nodeClickListeners = new java.util.ArrayList<>();
 
     public void setScale(double scale) {
         this.scale = Math.max(0.1, Math.min(5.0, scale));
@@ -39,6 +101,16 @@ public class LogicGraphPanel extends JPanel {
     public int getOffsetX() { return offsetX; }
     public int getOffsetY() { return offsetY; }
 
+    // 开关分块缓存渲染（关闭时释放全部图块）
+    public void setTileCacheEnabled(boolean enabled) {
+        if (enabled == (tileCache != null)) return;
+        tileCache = enabled ? new LogicGraphTileCache(renderer) : null;
+        repaint();
+    }
+    public boolean isTileCacheEnabled() { return tileCache != null; }
+    // 分块缓存（未开启时为 null），可调整内存预算
+    public LogicGraphTileCache getTileCache() { return tileCache; }
+
     public LogicGraphPanel() {
         setPreferredSize(new Dimension(1200, 1200));
         setBackground(Color.WHITE);
@@ -47,8 +119,8 @@ public class LogicGraphPanel extends JPanel {
             double oldScale = scale;
             if (e.getPreciseWheelRotation() < 0) setScale(scale * 1.1);
             else setScale(scale / 1.1);
-            // 缩放时以鼠标为中心调整偏移
-            int mx = e.getX(), my = e.getY();
+            // 缩放时以鼠标为中心调整偏移（水平方向的绘制原点为 offsetX + 面板宽度/2）
+            int mx = e.getX() - getWidth() / 2, my = e.getY();
             offsetX = (int)((offsetX - mx) * (scale/oldScale) + mx);
             offsetY = (int)((offsetY - my) * (scale/oldScale) + my);
             repaint();
@@ -63,6 +135,12 @@ public class LogicGraphPanel extends JPanel {
             public void mouseReleased(java.awt.event.MouseEvent e) {
                 dragging = false;
             }
+            public void mouseClicked(java.awt.event.MouseEvent e) {
+                if (!javax.swing.SwingUtilities.isLeftMouseButton(e)) return;
+                Integer id = getNodeIdAt(e.getX(), e.getY());
+                if (id == null) return;
+                for (java.util.function.IntConsumer l : nodeClickListeners) l.accept(id);
+            }
         });
         addMouseMotionListener(new java.awt.event.MouseMotionAdapter() {
             public void mouseDragged(java.awt.event.MouseEvent e) {
@@ -77,161 +155,246 @@ public class LogicGraphPanel extends JPanel {
 
     public void setLogicRoot(LogicNode root) {
         this.root = root;
+        changedNodes = null;
+        invalidateLayout();
         repaint();
     }
 
-    public void setHighlightNodeId(Integer nodeId) {
-        this.highlightNodeId = nodeId;
+    // 模型内容已变化（节点增删改，变化范围未知），丢弃缓存的布局并重绘
+    public void modelChanged() {
+        changedNodes = null;
+        invalidateLayout();
+        repaint();
+    }
+
+    // 指定节点的文本已变化，或有子节点被增删、移动、交换（此时可不传节点）：
+    // 重新布局时只为这些节点生成文本并测量，其余节点复用上次完整布局的结果
+    public void nodesChanged(LogicNode... nodes) {
+        if (changedNodes != null) changedNodes.addAll(Arrays.asList(nodes));
+        invalidateLayout();
         repaint();
     }
 
     @Override
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        Graphics2D g2 = (Graphics2D)g;
-        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g2.translate(offsetX, offsetY);
-        g2.scale(scale, scale);
-        nodeBounds.clear();
-        nodeSizes.clear();
-        if (root == null) return;
-        // 先计算所有节点的自适应尺寸
-        calcNodeSizes(g2, root);
-        // 计算布局
-        int panelWidth = (int)(getWidth() / scale);
-        int[] y = {vGap};
-        layoutTree(root, panelWidth / 2, y, g2);
-        // 绘制连线
-        drawEdges(g2, root);
-        // 绘制节点
-        drawNodes(g2, root);
-    }
-
-    // 递归计算每个节点的自适应尺寸
-    private void calcNodeSizes(Graphics g, LogicNode node) {
-        String text = node.toString();
-        FontMetrics fm = g.getFontMetrics();
-        int width = fm.stringWidth(text) + 24;
-        int height = fm.getHeight() + 16;
-        nodeSizes.put(node, new Dimension(width, height));
-        for (LogicNode child : node.children) {
-            calcNodeSizes(g, child);
+    public void setFont(Font font) {
+        super.setFont(font);
+        // 字体影响节点尺寸，需重新布局，旧的测量不再可用
+        lastFullLayout = null;
+        lastFullLabels = new LogicGraphLabel[0];
+        changedNodes = null;
+        invalidateLayout();
+    }
+
+    // 平移画布使指定节点位于可视区域中心（使用当前 scale）
+    public void centerOnNode(int nodeId) {
+        pendingCenterNodeId = null;
+        if (ensureLayout() != null && layoutPending) {
+            // 预览中的位置在完整布局后会变化
+            pendingCenterNodeId = nodeId;
+            return;
+        }
+        Rectangle rect = getNodeBounds(nodeId);
+        if (rect == null) return;
+        int cx = rect.x + rect.width/2;
+        int cy = rect.y + rect.height/2;
+        Rectangle view = getVisibleRect();
+        int targetOffsetX = (int)(view.width/2 - cx * scale) - getWidth() / 2;
+        int targetOffsetY = (int)(view.height/2 - cy * scale);
+        setOffset(targetOffsetX, targetOffsetY);
+    }
+
+    // 丢弃布局并作废正在进行的后台布局
+    private void invalidateLayout() {
+        layout = null;
+        layoutPending = false;
+        layoutGeneration++;
+        if (layoutWorker != null) {
+            layoutWorker.cancel(false);
+            layoutWorker = null;
         }
     }
 
-    // 递归布局，返回本子树的宽度
-    private int layoutTree(LogicNode node, int centerX, int[] y, Graphics g) {
-        int thisY = y[0];
-        int childCount = node.children.size();
-        Dimension size = nodeSizes.getOrDefault(node, new Dimension(120,36));
-        int nodeWidth = size.width;
-        int nodeHeight = size.height;
-        int childY = thisY + nodeHeight + vGap;
-        int totalChildWidth = 0;
-        int[] subtreeWidths = new int[childCount];
-        // 递归计算每个子树宽度
-        for (int i = 0; i < childCount; i++) {
-            int[] dummyY = {childY};
-            subtreeWidths[i] = layoutTree(node.children.get(i), 0, dummyY, g); // 先算宽度，不布局
-            totalChildWidth += subtreeWidths[i];
+    // 返回缓存的布局，必要时重新计算（不依赖 paint，可在任意时刻调用）
+    // 大树返回顶层预览，完整布局在后台完成后替换并重绘
+    private LogicTreeLayout.Result ensureLayout() {
+        if (root == null) return null;
+        if (layout == null) {
+            FontMetrics fm = getFontMetrics(getFont());
+            int threshold = lastFullLayout != null && changedNodes != null ? INCREMENTAL_LAYOUT_THRESHOLD : BACKGROUND_LAYOUT_THRESHOLD;
+            if (countNodes(root, threshold) < threshold) {
+                install(computeLayout(root, fm, Integer.MAX_VALUE, () -> false));
+            } else {
+                // 预览不作为记忆，完整布局仍以上次完整布局为基础
+                install(computeLayout(root, fm, PREVIEW_NODE_LIMIT, () -> false));
+                layoutPending = true;
+                startBackgroundLayout(fm);
+            }
         }
-        if (childCount > 0) totalChildWidth += (childCount - 1) * hGap;
-        int subtreeWidth = Math.max(nodeWidth, totalChildWidth);
-        int startX = centerX - subtreeWidth / 2;
-        // 再布局子节点
-        int curX = startX;
-        for (int i = 0; i < childCount; i++) {
-            int childCenter = curX + subtreeWidths[i] / 2;
-            int[] childYArr = {childY};
-            layoutTree(node.children.get(i), childCenter, childYArr, g);
-            curX += subtreeWidths[i] + hGap;
+        return layout;
+    }
+
+    private void install(LayoutSnapshot snapshot) {
+        layout = snapshot.layout;
+        labels = snapshot.labels;
+        layoutIndex = snapshot.index;
+        if (layout.isComplete()) {
+            lastFullLayout = layout;
+            lastFullLabels = labels;
+            changedNodes = Collections.newSetFromMap(new IdentityHashMap<>());
         }
-        // 记录本节点位置
-        nodeBounds.put(node, new Rectangle(centerX - nodeWidth / 2, thisY, nodeWidth, nodeHeight));
-        return subtreeWidth;
-    }
-
-    private void drawEdges(Graphics g, LogicNode node) {
-        Rectangle from = nodeBounds.get(node);
-        Dimension fromSize = nodeSizes.getOrDefault(node, new Dimension(120,36));
-        int fromW = fromSize.width, fromH = fromSize.height;
-        for (LogicNode child : node.children) {
-            Rectangle to = nodeBounds.get(child);
-            Dimension toSize = nodeSizes.getOrDefault(child, new Dimension(120,36));
-            int toW = toSize.width;
-            if (from != null && to != null) {
-                drawArrow(g, from.x + fromW / 2, from.y + fromH, to.x + toW / 2, to.y);
+    }
+
+    private void startBackgroundLayout(FontMetrics fm) {
+        final int generation = layoutGeneration;
+        // 在 EDT 上读取树（展平与生成文本），后台只测量与排布；期间 EDT 上的修改会使本次结果作废
+        final LogicTreeLayout.Result base = lastFullLayout;
+        final LogicGraphLabel[] baseLabels = lastFullLabels;
+        final LogicTreeLayout.Snapshot input = layoutEngine.snapshot(base, changedNodes, root);
+        layoutWorker = new SwingWorker<LayoutSnapshot, Void>() {
+            @Override
+            protected LayoutSnapshot doInBackground() {
+                return computeLayout(input, fm, base, baseLabels, this::isCancelled);
             }
-            drawEdges(g, child);
+
+            @Override
+            protected void done() {
+                // 期间模型已变化：结果作废，新一轮布局已由 invalidateLayout 之后的 ensureLayout 发起
+                if (generation != layoutGeneration || isCancelled()) return;
+                layoutWorker = null;
+                try {
+                    install(get());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (java.util.concurrent.ExecutionException ex) {
+                    // 后台布局失败（如测量出错），在 EDT 上重算一次
+                    changedNodes = null;
+                    install(computeLayout(root, getFontMetrics(getFont()), Integer.MAX_VALUE, () -> false));
+                }
+                layoutPending = false;
+                if (pendingCenterNodeId != null) centerOnNode(pendingCenterNodeId);
+                repaint();
+            }
+        };
+        layoutWorker.execute();
+    }
+
+    // 以当前记忆计算布局（在 EDT 上调用）
+    private LayoutSnapshot computeLayout(LogicNode root, FontMetrics fm, int maxNodes, java.util.function.BooleanSupplier cancelled) {
+        return computeLayout(root, fm, lastFullLayout, lastFullLabels, changedNodes, maxNodes, cancelled);
+    }
+
+    // 计算布局、文本排版与空间索引（在 EDT 上读取树）
+    // base / baseLabels 为上一次完整布局及其排版，changed 为其后文本可能变化的节点（null 为未知）
+    private LayoutSnapshot computeLayout(LogicNode root, FontMetrics fm, LogicTreeLayout.Result base, LogicGraphLabel[] baseLabels,
+                                         Set<LogicNode> changed, int maxNodes, java.util.function.BooleanSupplier cancelled) {
+        Map<LogicNode, LogicGraphLabel> measured = new IdentityHashMap<>();
+        LogicTreeLayout.NodeMeasurer measurer = measurer(fm, base, baseLabels, measured, cancelled);
+        LogicTreeLayout.Result result = maxNodes == Integer.MAX_VALUE
+            ? layoutEngine.relayout(base, changed, root, 0, vGap, measurer)
+            : layoutEngine.layoutTopLevels(base, changed, root, 0, vGap, measurer, maxNodes);
+        return snapshotOf(result, base, baseLabels, measured);
+    }
+
+    // 按 EDT 上生成的布局快照计算（不访问面板状态与 LogicNode 内容，可在后台线程执行）
+    private LayoutSnapshot computeLayout(LogicTreeLayout.Snapshot input, FontMetrics fm, LogicTreeLayout.Result base,
+                                         LogicGraphLabel[] baseLabels, java.util.function.BooleanSupplier cancelled) {
+        Map<LogicNode, LogicGraphLabel> measured = new IdentityHashMap<>();
+        LogicTreeLayout.Result result = layoutEngine.layout(input, 0, vGap, measurer(fm, base, baseLabels, measured, cancelled));
+        return snapshotOf(result, base, baseLabels, measured);
+    }
+
+    // 测量并记录节点排版：只有重新测量的节点才会记入 measured，其余节点的排版直接取自 baseLabels
+    private static LogicTreeLayout.NodeMeasurer measurer(FontMetrics fm, LogicTreeLayout.Result base, LogicGraphLabel[] baseLabels,
+                                                         Map<LogicNode, LogicGraphLabel> measured, java.util.function.BooleanSupplier cancelled) {
+        return (node, text) -> {
+            if (cancelled.getAsBoolean()) throw new java.util.concurrent.CancellationException();
+            int ps = base == null ? -1 : base.getSlot(node);
+            LogicGraphLabel label = ps >= 0 ? baseLabels[ps] : null;
+            if (label == null || !label.isFor(text, fm.getFont())) label = LogicGraphLabel.create(node.nodeId, text, fm);
+            measured.put(node, label);
+            return new Dimension(label.getTextWidth() + 24, fm.getHeight() + 16);
+        };
+    }
+
+    private static LayoutSnapshot snapshotOf(LogicTreeLayout.Result result, LogicTreeLayout.Result base, LogicGraphLabel[] baseLabels,
+                                             Map<LogicNode, LogicGraphLabel> measured) {
+        LogicGraphLabel[] slotLabels = new LogicGraphLabel[result.size()];
+        for (int i = 0; i < slotLabels.length; i++) {
+            LogicGraphLabel label = measured.get(result.getNode(i));
+            slotLabels[i] = label != null ? label : baseLabels[base.getSlot(result.getNode(i))];
         }
+        return new LayoutSnapshot(result, slotLabels, new LogicLayoutIndex(result));
     }
 
-    private void drawNodes(Graphics g, LogicNode node) {
-        Rectangle rect = nodeBounds.get(node);
-        if (rect == null) return;
-        Dimension size = nodeSizes.getOrDefault(node, new Dimension(120,36));
-        int nodeWidth = size.width;
-        int nodeHeight = size.height;
-        Graphics2D g2 = (Graphics2D) g;
-        if (highlightNodeId != null && node.nodeId == highlightNodeId) {
-            g2.setColor(new Color(60, 120, 255)); // 蓝色
-            g2.fillRoundRect(rect.x - 4, rect.y - 4, rect.width + 8, rect.height + 8, 16, 16);
+    // 树的节点数，数到 limit 即停止
+    private static int countNodes(LogicNode root, int limit) {
+        int count = 0;
+        Deque<LogicNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty() && count < limit) {
+            LogicNode node = stack.pop();
+            count++;
+            for (LogicNode c : node.children) stack.push(c);
+        }
+        return count;
+    }
+
+    // 当前布局的空间索引（随布局一起失效，首次绘制时构建）
+    private LogicLayoutIndex ensureLayoutIndex() {
+        LogicTreeLayout.Result layout = ensureLayout();
+        if (layout == null) return null;
+        if (layoutIndex == null || layoutIndex.getLayout() != layout) layoutIndex = new LogicLayoutIndex(layout);
+        return layoutIndex;
+    }
+
+    public void setHighlightNodeId(Integer nodeId) {
+        this.highlightNodeId = nodeId;
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        LogicLayoutIndex index = ensureLayoutIndex();
+        if (index == null) return;
+        LogicTreeLayout.Result layout = index.getLayout();
+        Graphics2D g2 = (Graphics2D)g;
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        java.awt.geom.AffineTransform screen = g2.getTransform();
+        // 根节点水平居中于面板，布局本身与面板宽度和缩放无关
+        int originX = offsetX + getWidth() / 2, originY = offsetY;
+        if (tileCache != null) tileCache.paint(g2, index, labels, scale, originX, originY, getBackground());
+        g2.translate(originX, originY);
+        g2.scale(scale, scale);
+        if (tileCache == null) {
+            // 变换后的裁剪区域即可见的布局坐标范围
+            Rectangle clip = g2.getClipBounds();
+            if (clip == null) clip = layout.getExtent();
+            renderer.paint(g2, index, labels, clip, scale);
         }
-        g2.setColor(Color.WHITE);
-        g2.fillRoundRect(rect.x, rect.y, nodeWidth, nodeHeight, 16, 16);
-        g2.setColor(Color.BLACK);
-        g2.drawRoundRect(rect.x, rect.y, nodeWidth, nodeHeight, 16, 16);
-        // 节点内容：编号蓝色，关键字紫色，其余黑色
-        String text = node.toString();
-        String nodeIdStr = "[" + node.nodeId + "]";
-        FontMetrics fm = g2.getFontMetrics();
-        // 计算各段宽度
-        int idWidth = fm.stringWidth(nodeIdStr);
-        String content = text.startsWith(nodeIdStr) ? text.substring(nodeIdStr.length()).trim() : text;
-        // 分词并测量宽度
-        String[] parts = content.split(" ");
-        int contentWidth = 0;
-        for (String p : parts) contentWidth += fm.stringWidth(p) + fm.stringWidth(" ");
-        int totalWidth = idWidth + 4 + contentWidth;
-        int tx = rect.x + (nodeWidth - totalWidth) / 2;
-        int ty = rect.y + (nodeHeight + fm.getAscent() - fm.getDescent()) / 2;
-        // 编号（蓝色）
-        g2.setColor(new Color(60, 120, 255));
-        g2.drawString(nodeIdStr, tx, ty);
-        // 内容（逐词着色）
-        int curX = tx + idWidth + 4;
-        for (int i=0;i<parts.length;i++) {
-            String p = parts[i];
-            String clean = p.replaceAll("[^A-Za-z]", "");
-            String lower = clean.toLowerCase();
-            boolean isKeyword = "forall".equals(lower) || "exists".equals(lower) || "and".equals(lower) || "or".equals(lower) || "with".equals(lower) || "in".equals(lower) || "formula".equals(lower) || "implies".equals(lower) || "not".equals(lower);
-            if (isKeyword) g2.setColor(new Color(128,0,128)); else g2.setColor(Color.BLACK);
-            g2.drawString(parts[i], curX, ty);
-            curX += fm.stringWidth(parts[i]) + fm.stringWidth(" ");
+        // 选中高亮不进入图块，始终叠加在最上层
+        if (highlightNodeId != null) {
+            int slot = layout.getSlotById(highlightNodeId);
+            if (slot >= 0) renderer.paintHighlight(g2, layout, labels, slot, scale);
         }
-        for (LogicNode child : node.children) {
-            drawNodes(g, child);
+        if (layoutPending) {
+            g2.setTransform(screen);
+            g2.setColor(Color.GRAY);
+            g2.drawString("正在布局完整图，当前仅显示前 " + layout.size() + " 个节点…", 8, 8 + g2.getFontMetrics().getAscent());
         }
     }
 
-    // 绘制箭头
-    private void drawArrow(Graphics g, int x1, int y1, int x2, int y2) {
-        Graphics2D g2 = (Graphics2D) g;
-        g2.setColor(Color.GRAY);
-        g2.setStroke(new BasicStroke(2));
-        g2.drawLine(x1, y1, x2, y2);
-        // 箭头
-        double angle = Math.atan2(y2 - y1, x2 - x1);
-        int len = 10;
-        int aw = 6;
-        int ax = x2 - (int) (len * Math.cos(angle));
-        int ay = y2 - (int) (len * Math.sin(angle));
-        int xA = ax + (int) (aw * Math.sin(angle));
-        int yA = ay - (int) (aw * Math.cos(angle));
-        int xB = ax - (int) (aw * Math.sin(angle));
-        int yB = ay + (int) (aw * Math.cos(angle));
-        int[] xs = {x2, xA, xB};
-        int[] ys = {y2, yA, yB};
-        g2.fillPolygon(xs, ys, 3);
+    // 一次布局的全部结果，后台计算完成后整体替换到面板
+    private static class LayoutSnapshot {
+        final LogicTreeLayout.Result layout;
+        final LogicGraphLabel[] labels;
+        final LogicLayoutIndex index;
+
+        LayoutSnapshot(LogicTreeLayout.Result layout, LogicGraphLabel[] labels, LogicLayoutIndex index) {
+            this.layout = layout;
+            this.labels = labels;
+            this.index = index;
+        }
     }
 }
@@ -0,0 +1,178 @@
+package logic;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * 把已计算的布局导出为 PNG（与面板相同的绘制，缩放 1.0）
+ * - 按水平条带绘制，每条带绘制完立即压缩写出，不分配整张图片
+ * - 内存只与条带大小有关：条带高度按图宽与 stripBudget 自适应；一行像素已超出预算的超宽图
+ *   逐行按列分块绘制，每块写出后即复用缓冲
+ * - 自带 PNG 编码（RGB 8 位、无行滤波、zlib 流式压缩），不依赖 ImageIO 分配整图
+ * - 自建空间索引与绘制器，可在后台线程执行
+ */
+public class LogicGraphPngExporter {
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    // 单个 IDAT 块的数据上限
+    private static final int IDAT_CHUNK = 64 * 1024;
+    private static final int MAX_STRIP_ROWS = 512;
+
+    private final LogicTreeLayout.Result layout;
+    private final LogicGraphLabel[] labels;
+    private final Font font;
+    private final LogicGraphRenderer renderer = new LogicGraphRenderer();
+    private int pad = 40;
+    private Color background = Color.WHITE;
+    // 条带像素缓冲的内存上限（字节）
+    private long stripBudget = 32L * 1024 * 1024;
+
+    /**
+     * @param layout 布局结果
+     * @param labels 按 slot 对应的节点文本排版（须与 font 一致）
+     * @param font 绘制字体
+     */
+    public LogicGraphPngExporter(LogicTreeLayout.Result layout, LogicGraphLabel[] labels, Font font) {
+        this.layout = layout;
+        this.labels = labels;
+        this.font = font;
+    }
+
+    public void setPadding(int pad) { this.pad = pad; }
+    public void setBackground(Color background) { this.background = background; }
+    public void setStripBudget(long bytes) { this.stripBudget = bytes; }
+
+    /** 导出图片的尺寸（含边距） */
+    public Dimension getImageSize() {
+        Rectangle ext = layout.getExtent();
+        long w = (long) ext.width + 2L * pad, h = (long) ext.height + 2L * pad;
+        if (w > Integer.MAX_VALUE || h > Integer.MAX_VALUE) throw new IllegalStateException("图片尺寸超出 PNG 上限: " + w + "x" + h);
+        return new Dimension((int) w, (int) h);
+    }
+
+    /** 写出 PNG（调用方负责关闭 out） */
+    public void write(OutputStream out) throws IOException {
+        Dimension size = getImageSize();
+        int width = size.width, height = size.height;
+        Rectangle ext = layout.getExtent();
+        LogicLayoutIndex index = new LogicLayoutIndex(layout);
+        int rows = (int) Math.max(1, Math.min(MAX_STRIP_ROWS, stripBudget / (width * 4L)));
+        // 只有在一行都放不下时才按列分块（此时 rows 必为 1，行内各块依次写出即为扫描行顺序）
+        int tileWidth = (int) Math.min(width, Math.max(1024, stripBudget / 4));
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(PNG_SIGNATURE);
+        ByteArrayOutputStream ihdr = new ByteArrayOutputStream();
+        DataOutputStream h = new DataOutputStream(ihdr);
+        h.writeInt(width);
+        h.writeInt(height);
+        h.writeByte(8);  // 位深
+        h.writeByte(2);  // 颜色类型：RGB
+        h.writeByte(0);  // 压缩方法
+        h.writeByte(0);  // 滤波方法
+        h.writeByte(0);  // 不隔行
+        writeChunk(data, "IHDR", ihdr.toByteArray(), ihdr.size());
+
+        BufferedImage strip = new BufferedImage(tileWidth, rows, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) strip.getRaster().getDataBuffer()).getData();
+        byte[] line = new byte[tileWidth * 3];
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try (DeflaterOutputStream z = new DeflaterOutputStream(new IdatOutputStream(data), deflater, IDAT_CHUNK)) {
+            for (int y0 = 0; y0 < height; y0 += rows) {
+                int stripRows = Math.min(rows, height - y0);
+                for (int x0 = 0; x0 < width; x0 += tileWidth) {
+                    int tw = Math.min(tileWidth, width - x0);
+                    renderStrip(strip, index, ext, x0, y0, tw, stripRows);
+                    for (int r = 0; r < stripRows; r++) {
+                        // 行首的滤波类型 0（None）
+                        if (x0 == 0) z.write(0);
+                        int p = r * tileWidth;
+                        for (int x = 0, k = 0; x < tw; x++) {
+                            int rgb = pixels[p + x];
+                            line[k++] = (byte) (rgb >> 16);
+                            line[k++] = (byte) (rgb >> 8);
+                            line[k++] = (byte) rgb;
+                        }
+                        z.write(line, 0, tw * 3);
+                    }
+                }
+            }
+            // close 时写出剩余压缩数据，IdatOutputStream 不关闭底层流
+        } finally {
+            deflater.end();
+        }
+        writeChunk(data, "IEND", new byte[0], 0);
+        data.flush();
+    }
+
+    // 绘制图片中 (x0, y0) 起 tw x stripRows 的区域到条带缓冲左上角
+    private void renderStrip(BufferedImage strip, LogicLayoutIndex index, Rectangle ext, int x0, int y0, int tw, int stripRows) {
+        Graphics2D g = strip.createGraphics();
+        try {
+            g.setColor(background);
+            g.fillRect(0, 0, tw, stripRows);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setFont(font);
+            g.setClip(0, 0, tw, stripRows);
+            // 布局坐标平移到图片坐标，再平移到条带
+            g.translate(pad - ext.x - x0, pad - ext.y - y0);
+            renderer.paint(g, index, labels, g.getClipBounds(), 1.0);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    private static void writeChunk(DataOutputStream out, String type, byte[] buf, int len) throws IOException {
+        byte[] typeBytes = type.getBytes("US-ASCII");
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(buf, 0, len);
+        out.writeInt(len);
+        out.write(typeBytes);
+        out.write(buf, 0, len);
+        out.writeInt((int) crc.getValue());
+    }
+
+    // 把压缩数据按块包装为 IDAT，关闭时只写出缓冲中剩余的数据
+    private static class IdatOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final byte[] buf = new byte[IDAT_CHUNK];
+        private int len = 0;
+
+        IdatOutputStream(DataOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (len == buf.length) flushChunk();
+            buf[len++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int n) throws IOException {
+            while (n > 0) {
+                if (len == buf.length) flushChunk();
+                int k = Math.min(n, buf.length - len);
+                System.arraycopy(b, off, buf, len, k);
+                len += k;
+                off += k;
+                n -= k;
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            if (len == 0) return;
+            writeChunk(out, "IDAT", buf, len);
+            len = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flushChunk();
+        }
+    }
+}
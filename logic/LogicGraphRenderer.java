@@ -0,0 +1,156 @@
+package logic;
+import java.awt.*;
+
+/**
+ * 逻辑树有向图的绘制（LogicGraphPanel 直接绘制与分块缓存共用）
+ * - 输入为布局坐标下的 Graphics2D（已应用平移与缩放）与可见区域
+ * - 只通过空间索引处理与可见区域相交的节点和连线
+ * - 选中高亮不属于常规绘制，由 paintHighlight 叠加在上层
+ * - 节点文本使用预排版的 LogicGraphLabel（按 slot 对应），颜色、线型与临时数组均复用，
+ *   绘制过程不分配对象；因此实例非线程安全（仅在 EDT 上使用）
+ */
+public class LogicGraphRenderer {
+    private static final BasicStroke EDGE_STROKE = new BasicStroke(2);
+    private static final Color EDGE_COLOR = Color.GRAY;
+    // 子节点数达到该值的扇形才做同像素去重（少量连线逐条绘制，结果与裁剪位置无关）
+    private static final int DENSE_FAN = 64;
+
+    // 绘制过程复用的临时对象
+    private final java.awt.geom.Line2D.Double line = new java.awt.geom.Line2D.Double();
+    private final double[] seg = new double[4];
+    private final int[] lastSeg = new int[4];
+    private final int[] arrowXs = new int[3], arrowYs = new int[3];
+    private final int[] edgeRange = new int[2];
+
+    /**
+     * 绘制 clip（布局坐标）范围内的连线与节点
+     * @param labels 按 slot 对应的节点文本排版
+     * @param scale 当前缩放，用于文字 LOD 与同像素连线去重
+     */
+    public void paint(Graphics2D g2, LogicLayoutIndex index, LogicGraphLabel[] labels, Rectangle clip, double scale) {
+        LogicTreeLayout.Result layout = index.getLayout();
+        // 字号缩到几个像素以下时文字已无法辨认，只画节点框
+        boolean drawText = g2.getFontMetrics().getHeight() * scale >= 4;
+        // 绘制连线
+        drawEdges(g2, index, clip, scale);
+        // 绘制节点（外扩以包含节点边框）
+        Rectangle nodeClip = new Rectangle(clip);
+        nodeClip.grow(4, 4);
+        // 文字只在与裁剪区域纵向相交时绘制（条带、图块边缘只露出节点框的情况）
+        int textTop = clip.y - 1, textBottom = clip.y + clip.height + 1;
+        index.queryNodes(nodeClip, slot -> drawNode(g2, layout, labels[slot], slot,
+            drawText && labels[slot].intersectsRows(layout.getY(slot), layout.getHeight(slot), textTop, textBottom)));
+    }
+
+    /** 在已绘制的图上叠加选中高亮：蓝色外框，再重绘节点本身 */
+    public void paintHighlight(Graphics2D g2, LogicTreeLayout.Result layout, LogicGraphLabel[] labels, int slot, double scale) {
+        g2.setColor(LogicGraphLabel.ID_COLOR); // 蓝色
+        g2.fillRoundRect(layout.getX(slot) - 4, layout.getY(slot) - 4, layout.getWidth(slot) + 8, layout.getHeight(slot) + 8, 16, 16);
+        drawNode(g2, layout, labels[slot], slot, g2.getFontMetrics().getHeight() * scale >= 4);
+    }
+
+    private void drawEdges(Graphics2D g2, LogicLayoutIndex index, Rectangle clip, double scale) {
+        LogicTreeLayout.Result layout = index.getLayout();
+        // 外扩裁剪区域以容纳线宽与箭头（箭头长 10）
+        Rectangle edgeClip = new Rectangle(clip);
+        edgeClip.grow(12, 12);
+        g2.setStroke(EDGE_STROKE);
+        g2.setColor(EDGE_COLOR);
+        // 连线按精确几何光栅化：默认的描边规整会把裁剪后的小数端点对齐到像素，
+        // 同一条线在不同裁剪区域（图块、导出条带）中会画成略有差异的像素
+        Object strokeControl = g2.getRenderingHint(RenderingHints.KEY_STROKE_CONTROL);
+        g2.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        int[] last = lastSeg;
+        int[] range = edgeRange;
+        index.queryEdgeFans(edgeClip, i -> {
+            // 只遍历扇形中可能与裁剪区域相交的一段子节点（宽扇形跨过视口时不再逐条检查全部连线）
+            if (!index.visibleEdgeRange(i, edgeClip, range)) return;
+            int fromX = layout.getX(i) + layout.getWidth(i) / 2;
+            int fromY = layout.getY(i) + layout.getHeight(i);
+            boolean startInside = edgeClip.contains(fromX, fromY);
+            boolean dense = layout.getChildCount(i) >= DENSE_FAN;
+            boolean drawnAny = false;
+            for (int c = range[0]; c <= range[1]; c++) {
+                int toX = layout.getX(c) + layout.getWidth(c) / 2, toY = layout.getY(c);
+                boolean endInside = edgeClip.contains(toX, toY);
+                if (startInside && endInside) {
+                    drawArrow(g2, fromX, fromY, toX, toY);
+                    continue;
+                }
+                // 线段先裁剪到可见区域：宽扇形的长连线整条光栅化代价很高
+                if (!clipSegment(fromX, fromY, toX, toY, edgeClip, seg)) continue;
+                // 密集扇形中，裁剪后在屏幕上与上一条落在同一像素上的连线不再重复绘制
+                if (dense) {
+                    int q0 = (int) Math.round(seg[0] * scale), q1 = (int) Math.round(seg[1] * scale);
+                    int q2 = (int) Math.round(seg[2] * scale), q3 = (int) Math.round(seg[3] * scale);
+                    if (drawnAny && q0 == last[0] && q1 == last[1] && q2 == last[2] && q3 == last[3]) continue;
+                    drawnAny = true;
+                    last[0] = q0; last[1] = q1; last[2] = q2; last[3] = q3;
+                }
+                line.setLine(seg[0], seg[1], seg[2], seg[3]);
+                g2.draw(line);
+                if (endInside) drawArrowHead(g2, fromX, fromY, toX, toY);
+            }
+        });
+        if (strokeControl != null) g2.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, strokeControl);
+    }
+
+    private void drawNode(Graphics2D g2, LogicTreeLayout.Result layout, LogicGraphLabel label, int slot, boolean drawText) {
+        int x = layout.getX(slot), y = layout.getY(slot);
+        int nodeWidth = layout.getWidth(slot);
+        int nodeHeight = layout.getHeight(slot);
+        g2.setColor(Color.WHITE);
+        g2.fillRoundRect(x, y, nodeWidth, nodeHeight, 16, 16);
+        g2.setColor(Color.BLACK);
+        g2.drawRoundRect(x, y, nodeWidth, nodeHeight, 16, 16);
+        // 节点内容：编号蓝色，关键字紫色，其余黑色
+        if (drawText) label.draw(g2, x, y, nodeWidth, nodeHeight);
+    }
+
+    // 绘制箭头（颜色与线型由调用方设置）
+    private void drawArrow(Graphics2D g2, int x1, int y1, int x2, int y2) {
+        g2.drawLine(x1, y1, x2, y2);
+        drawArrowHead(g2, x1, y1, x2, y2);
+    }
+
+    // 箭头
+    private void drawArrowHead(Graphics2D g2, int x1, int y1, int x2, int y2) {
+        double angle = Math.atan2(y2 - y1, x2 - x1);
+        int len = 10;
+        int aw = 6;
+        int ax = x2 - (int) (len * Math.cos(angle));
+        int ay = y2 - (int) (len * Math.sin(angle));
+        int xA = ax + (int) (aw * Math.sin(angle));
+        int yA = ay - (int) (aw * Math.cos(angle));
+        int xB = ax - (int) (aw * Math.sin(angle));
+        int yB = ay + (int) (aw * Math.cos(angle));
+        arrowXs[0] = x2; arrowXs[1] = xA; arrowXs[2] = xB;
+        arrowYs[0] = y2; arrowYs[1] = yA; arrowYs[2] = yB;
+        g2.fillPolygon(arrowXs, arrowYs, 3);
+    }
+
+    // Liang-Barsky 线段裁剪，裁剪后的 {x1, y1, x2, y2} 写入 out，与矩形不相交时返回 false
+    private static boolean clipSegment(double x1, double y1, double x2, double y2, Rectangle r, double[] out) {
+        double dx = x2 - x1, dy = y2 - y1;
+        double t0 = 0, t1 = 1;
+        for (int i = 0; i < 4; i++) {
+            double p, q;
+            switch (i) {
+                case 0: p = -dx; q = x1 - r.x; break;
+                case 1: p = dx; q = r.x + r.width - x1; break;
+                case 2: p = -dy; q = y1 - r.y; break;
+                default: p = dy; q = r.y + r.height - y1; break;
+            }
+            if (p == 0) {
+                if (q < 0) return false;
+            } else {
+                double t = q / p;
+                if (p < 0) { if (t > t1) return false; if (t > t0) t0 = t; }
+                else { if (t < t0) return false; if (t < t1) t1 = t; }
+            }
+        }
+        out[0] = x1 + t0 * dx; out[1] = y1 + t0 * dy;
+        out[2] = x1 + t1 * dx; out[3] = y1 + t1 * dy;
+        return true;
+    }
+}
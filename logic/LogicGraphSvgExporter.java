@@ -1,153 +1,135 @@
 package logic;
 import java.awt.*;
+import java.io.IOException;
 import java.util.*;
 
 /**
  * LogicGraphSvgExporter
- * 导出LogicGraphPanel的树状图为SVG字符串
+ * 导出LogicGraphPanel的树状图为SVG
+ * - exportSvg(root, out) 边生成边写出，除布局外不保留整份文档
+ * - 测量字体的 FontMetrics 全局共享，只创建一次
  */
 public class LogicGraphSvgExporter {
-    private Map<LogicNode, Rectangle> nodeBounds;
-    private Map<LogicNode, Dimension> nodeSizes;
+    // 用默认字体估算宽高（所有导出共用）
+    private static final Font FONT = new Font("SansSerif", Font.PLAIN, 14);
+    private static FontMetrics sharedMetrics = null;
+
+    private LogicTreeLayout.Result layout;
     private int vGap = 40;
     private int hGap = 24;
     private int svgWidth = 1200;
     private int svgHeight = 1200;
+    // 平移量：把布局坐标移动到有边距的正区间
+    private int shiftX = 0, shiftY = 0;
+
+    private static synchronized FontMetrics metrics() {
+        if (sharedMetrics == null) sharedMetrics = new Canvas().getFontMetrics(FONT);
+        return sharedMetrics;
+    }
 
+    /** 导出为字符串（小图使用；大图请用 exportSvg(root, out) 直接写文件） */
     public String exportSvg(LogicNode root) {
-        nodeBounds = new HashMap<>();
-        nodeSizes = new HashMap<>();
-        // 计算尺寸
-        calcNodeSizes(root);
-        int[] y = {vGap};
-        layoutTree(root, 0, y); // 先布局，左上角为(0, vGap)
-        // 计算边界
-        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
-        for (Rectangle rect : nodeBounds.values()) {
-            minX = Math.min(minX, rect.x);
-            minY = Math.min(minY, rect.y);
-            maxX = Math.max(maxX, rect.x + rect.width);
-            maxY = Math.max(maxY, rect.y + rect.height);
+        StringBuilder sb = new StringBuilder();
+        try {
+            exportSvg(root, sb);
+        } catch (IOException e) {
+            // StringBuilder 不会抛出 IOException
+            throw new IllegalStateException(e);
         }
+        return sb.toString();
+    }
+
+    /** 把 SVG 逐个元素写入 out（调用方负责缓冲与关闭） */
+    public void exportSvg(LogicNode root, Appendable out) throws IOException {
+        FontMetrics fm = metrics();
+        // 计算尺寸与布局，根节点中心位于 x=0（padding略大）
+        layout = new LogicTreeLayout(hGap, vGap).layout(root, 0, vGap, (node, label) -> new Dimension(
+            fm.stringWidth(label) + 36, // padding更大，防止溢出
+            fm.getAscent() + fm.getDescent() + 20)); // 上下padding
+        // 计算边界
+        Rectangle extent = layout.getExtent();
         int pad = 40;
-        svgWidth = maxX - minX + pad * 2;
-        svgHeight = maxY - minY + pad * 2;
-        // 平移所有节点到有边距的正区间
-        Map<LogicNode, Rectangle> shiftedBounds = new HashMap<>();
-        for (Map.Entry<LogicNode, Rectangle> e : nodeBounds.entrySet()) {
-            Rectangle r = e.getValue();
-            shiftedBounds.put(e.getKey(), new Rectangle(r.x - minX + pad, r.y - minY + pad, r.width, r.height));
-        }
-        nodeBounds = shiftedBounds;
+        svgWidth = extent.width + pad * 2;
+        svgHeight = extent.height + pad * 2;
+        shiftX = pad - extent.x;
+        shiftY = pad - extent.y;
         // 生成SVG
-        StringBuilder sb = new StringBuilder();
-        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-        sb.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(svgWidth).append("\" height=\"").append(svgHeight).append("\">\n");
+        out.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        out.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(Integer.toString(svgWidth)).append("\" height=\"").append(Integer.toString(svgHeight)).append("\">\n");
         // 连线
-        drawEdges(sb, root);
+        drawEdges(out);
         // 节点
-        drawNodes(sb, root);
-        sb.append("</svg>\n");
-        return sb.toString();
-    }
-
-    private void calcNodeSizes(LogicNode node) {
-        // 用默认字体估算宽高，padding略大
-        Font font = new Font("SansSerif", Font.PLAIN, 14);
-        Canvas c = new Canvas();
-        FontMetrics fm = c.getFontMetrics(font);
-        String text = node.toString();
-        int width = fm.stringWidth(text) + 36; // padding更大，防止溢出
-        int height = fm.getAscent() + fm.getDescent() + 20; // 上下padding
-        nodeSizes.put(node, new Dimension(width, height));
-        for (LogicNode child : node.children) {
-            calcNodeSizes(child);
-        }
-    }
-
-    private int layoutTree(LogicNode node, int centerX, int[] y) {
-        int thisY = y[0];
-        int childCount = node.children.size();
-        Dimension size = nodeSizes.getOrDefault(node, new Dimension(120,36));
-        int nodeWidth = size.width;
-        int nodeHeight = size.height;
-        int childY = thisY + nodeHeight + vGap;
-        int totalChildWidth = 0;
-        int[] subtreeWidths = new int[childCount];
-        for (int i = 0; i < childCount; i++) {
-            int[] dummyY = {childY};
-            subtreeWidths[i] = layoutTree(node.children.get(i), 0, dummyY);
-            totalChildWidth += subtreeWidths[i];
-        }
-        if (childCount > 0) totalChildWidth += (childCount - 1) * hGap;
-        int subtreeWidth = Math.max(nodeWidth, totalChildWidth);
-        int startX = centerX - subtreeWidth / 2;
-        int curX = startX;
-        for (int i = 0; i < childCount; i++) {
-            int childCenter = curX + subtreeWidths[i] / 2;
-            int[] childYArr = {childY};
-            layoutTree(node.children.get(i), childCenter, childYArr);
-            curX += subtreeWidths[i] + hGap;
+        for (int i = 0; i < layout.size(); i++) {
+            drawNode(out, layout.getNode(i), i);
         }
-        nodeBounds.put(node, new Rectangle(centerX - nodeWidth / 2, thisY, nodeWidth, nodeHeight));
-        return subtreeWidth;
+        out.append("</svg>\n");
     }
 
-    private void drawEdges(StringBuilder sb, LogicNode node) {
-        Rectangle from = nodeBounds.get(node);
-        Dimension fromSize = nodeSizes.getOrDefault(node, new Dimension(120,36));
-        int fromW = fromSize.width, fromH = fromSize.height;
-        for (LogicNode child : node.children) {
-            Rectangle to = nodeBounds.get(child);
-            Dimension toSize = nodeSizes.getOrDefault(child, new Dimension(120,36));
-            int toW = toSize.width;
-            if (from != null && to != null) {
+    private void drawEdges(Appendable out) throws IOException {
+        for (int i = 0; i < layout.size(); i++) {
+            int x1 = layout.getX(i) + shiftX + layout.getWidth(i) / 2, y1 = layout.getY(i) + shiftY + layout.getHeight(i);
+            int first = layout.getFirstChild(i);
+            for (int k = 0; k < layout.getChildCount(i); k++) {
+                int c = first + k;
                 // 画线
-                int x1 = from.x + fromW / 2, y1 = from.y + fromH;
-                int x2 = to.x + toW / 2, y2 = to.y;
-                sb.append("<line x1=\"").append(x1).append("\" y1=\"").append(y1).append("\" x2=\"").append(x2).append("\" y2=\"").append(y2).append("\" stroke=\"#888\" stroke-width=\"2\" marker-end=\"url(#arrow)\"/>");
+                int x2 = layout.getX(c) + shiftX + layout.getWidth(c) / 2, y2 = layout.getY(c) + shiftY;
+                out.append("<line x1=\"").append(Integer.toString(x1)).append("\" y1=\"").append(Integer.toString(y1))
+                    .append("\" x2=\"").append(Integer.toString(x2)).append("\" y2=\"").append(Integer.toString(y2))
+                    .append("\" stroke=\"#888\" stroke-width=\"2\" marker-end=\"url(#arrow)\"/>");
             }
-            drawEdges(sb, child);
         }
     }
 
-    private void drawNodes(StringBuilder sb, LogicNode node) {
-        Rectangle rect = nodeBounds.get(node);
-        if (rect == null) return;
-        Dimension size = nodeSizes.getOrDefault(node, new Dimension(120,36));
-        int nodeWidth = size.width;
-        int nodeHeight = size.height;
+    private void drawNode(Appendable out, LogicNode node, int slot) throws IOException {
+        int x = layout.getX(slot) + shiftX, y = layout.getY(slot) + shiftY;
+        int nodeWidth = layout.getWidth(slot);
+        int nodeHeight = layout.getHeight(slot);
         int rx = 12, ry = 12;
         // 背景
-        sb.append("<rect x=\"").append(rect.x).append("\" y=\"").append(rect.y).append("\" width=\"").append(nodeWidth).append("\" height=\"").append(nodeHeight).append("\" rx=\"").append(rx).append("\" ry=\"").append(ry).append("\" fill=\"white\" stroke=\"black\" stroke-width=\"1.5\"/>");
+        out.append("<rect x=\"").append(Integer.toString(x)).append("\" y=\"").append(Integer.toString(y))
+            .append("\" width=\"").append(Integer.toString(nodeWidth)).append("\" height=\"").append(Integer.toString(nodeHeight))
+            .append("\" rx=\"").append(Integer.toString(rx)).append("\" ry=\"").append(Integer.toString(ry))
+            .append("\" fill=\"white\" stroke=\"black\" stroke-width=\"1.5\"/>");
         // 文本：编号蓝色，关键字紫色，其余黑色，同行显示
-        String text = node.toString();
+        String text = layout.getLabel(slot);
         String nodeIdStr = "[" + node.nodeId + "]";
         int fontSize = 14;
-        String content = text;
-        if (content.startsWith(nodeIdStr)) content = content.substring(nodeIdStr.length()).trim();
-        sb.append("<text x=\"").append(rect.x + nodeWidth/2).append("\" y=\"").append(rect.y + nodeHeight/2).append("\" text-anchor=\"middle\" dominant-baseline=\"middle\" font-size=\"").append(fontSize).append("\" font-family=\"SansSerif\">\n");
+        out.append("<text x=\"").append(Integer.toString(x + nodeWidth/2)).append("\" y=\"").append(Integer.toString(y + nodeHeight/2))
+            .append("\" text-anchor=\"middle\" dominant-baseline=\"middle\" font-size=\"").append(Integer.toString(fontSize))
+            .append("\" font-family=\"SansSerif\">\n");
         // 编号（蓝色）居中段
-        sb.append("  <tspan fill='#3C78FF'>").append(escapeXml(nodeIdStr)).append("</tspan>");
-        sb.append("\n  ");
+        out.append("  <tspan fill='#3C78FF'>");
+        appendEscaped(out, nodeIdStr);
+        out.append("</tspan>");
+        out.append("\n  ");
         // 内容逐词输出，关键字用紫色
-        String[] parts = content.split(" ");
+        String[] parts = LogicGraphLabel.splitContent(text, node.nodeId);
         for (int i=0;i<parts.length;i++) {
             String p = parts[i];
-            String clean = p.replaceAll("[^A-Za-z]", "");
-            String lower = clean.toLowerCase();
-            boolean isKeyword = "forall".equals(lower) || "exists".equals(lower) || "and".equals(lower) || "or".equals(lower) || "with".equals(lower) || "in".equals(lower) || "formula".equals(lower) || "implies".equals(lower) || "not".equals(lower);
-            if (isKeyword) sb.append("<tspan fill='purple'>").append(escapeXml(p)).append("</tspan>");
-            else sb.append("<tspan fill='black'>").append(escapeXml(p)).append("</tspan>");
-            if (i<parts.length-1) sb.append(" ");
-        }
-        sb.append("</text>");
-        for (LogicNode child : node.children) {
-                drawNodes(sb, child);
+            out.append(LogicGraphLabel.isKeyword(p) ? "<tspan fill='purple'>" : "<tspan fill='black'>");
+            appendEscaped(out, p);
+            out.append("</tspan>");
+            if (i<parts.length-1) out.append(" ");
         }
+        out.append("</text>");
     }
 
-    private String escapeXml(String s) {
-        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;").replace("'", "&apos;");
+    // XML 转义后写出，不生成中间字符串
+    private static void appendEscaped(Appendable out, String s) throws IOException {
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            String rep;
+            switch (s.charAt(i)) {
+                case '&': rep = "&amp;"; break;
+                case '<': rep = "&lt;"; break;
+                case '>': rep = "&gt;"; break;
+                case '"': rep = "&quot;"; break;
+                case '\'': rep = "&apos;"; break;
+                default: continue;
+            }
+            out.append(s, start, i).append(rep);
+            start = i + 1;
+        }
+        out.append(s, start, s.length());
     }
 }
@@ -0,0 +1,208 @@
+package logic;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.*;
+
+/**
+ * 逻辑树有向图的分块离屏缓存
+ * - 图按当前缩放栅格化为固定大小的图块，图块网格以布局原点为基准，平移只是图块贴图
+ * - 图块按 (缩放, 列, 行) 缓存，LRU 淘汰，总内存受预算限制（默认 64MB，可用
+ *   -DlogicGraph.tileCacheMB 或 setMemoryBudget 调整）
+ * - 布局变化时对比新旧布局，只丢弃变化节点及其连线覆盖的图块；变化过多时整体清空
+ * - 字体或背景变化时整体清空；不同缩放级别的图块互不影响
+ * - 非线程安全（仅在 EDT 上使用）
+ */
+public class LogicGraphTileCache {
+    public static final int TILE_SIZE = 256;
+    // TYPE_INT_RGB 每像素 4 字节
+    private static final long TILE_BYTES = (long) TILE_SIZE * TILE_SIZE * 4;
+    // 脏矩形超过此数量时直接清空，避免逐块比对的开销超过重绘
+    private static final int MAX_DIRTY_RECTS = 4096;
+
+    private final LogicGraphRenderer renderer;
+    private long memoryBudget = Long.getLong("logicGraph.tileCacheMB", 64L) * 1024 * 1024;
+    // accessOrder = true：迭代顺序即最近最少使用顺序
+    private final LinkedHashMap<TileKey, BufferedImage> tiles = new LinkedHashMap<>(64, 0.75f, true);
+    // 图块内容所对应的布局与绘制参数
+    private LogicTreeLayout.Result tileLayout = null;
+    private Font tileFont = null;
+    private Color tileBackground = null;
+
+    public LogicGraphTileCache(LogicGraphRenderer renderer) {
+        this.renderer = renderer;
+    }
+
+    /** 设置图块缓存的内存上限（字节），至少保留当前一屏所需的图块 */
+    public void setMemoryBudget(long bytes) {
+        this.memoryBudget = Math.max(TILE_BYTES, bytes);
+        evict(0);
+    }
+    public long getMemoryBudget() { return memoryBudget; }
+
+    /** 丢弃全部图块 */
+    public void invalidateAll() {
+        tiles.clear();
+    }
+
+    /** 丢弃所有缩放级别下与 area（布局坐标）相交的图块 */
+    public void invalidate(Rectangle area) {
+        invalidate(Collections.singletonList(area));
+    }
+
+    private void invalidate(java.util.List<Rectangle> areas) {
+        if (areas.isEmpty() || tiles.isEmpty()) return;
+        Iterator<TileKey> it = tiles.keySet().iterator();
+        while (it.hasNext()) {
+            TileKey k = it.next();
+            // 图块在布局坐标下的范围，外扩一个设备像素以包含抗锯齿边缘
+            double x0 = (k.tx * (double) TILE_SIZE - 1) / k.scale, y0 = (k.ty * (double) TILE_SIZE - 1) / k.scale;
+            double x1 = ((k.tx + 1) * (double) TILE_SIZE + 1) / k.scale, y1 = ((k.ty + 1) * (double) TILE_SIZE + 1) / k.scale;
+            for (Rectangle r : areas) {
+                if (r.x <= x1 && r.x + r.width >= x0 && r.y <= y1 && r.y + r.height >= y0) {
+                    it.remove();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 以图块绘制可见区域
+     * @param g 屏幕坐标下的 Graphics2D（未应用布局变换）
+     * @param labels 按 slot 对应的节点文本排版
+     * @param originX 布局原点在屏幕上的 x 坐标
+     * @param originY 布局原点在屏幕上的 y 坐标
+     * @param background 图块底色（面板背景）
+     */
+    public void paint(Graphics2D g, LogicLayoutIndex index, LogicGraphLabel[] labels, double scale, int originX, int originY, Color background) {
+        LogicTreeLayout.Result layout = index.getLayout();
+        Font font = g.getFont();
+        if (!font.equals(tileFont) || !background.equals(tileBackground)) {
+            tiles.clear();
+            tileFont = font;
+            tileBackground = background;
+        } else if (tileLayout != null && tileLayout != layout) {
+            java.util.List<Rectangle> dirty = diffLayouts(tileLayout, layout);
+            if (dirty == null) tiles.clear();
+            else invalidate(dirty);
+        }
+        tileLayout = layout;
+
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            Rectangle ext = layout.getExtent();
+            clip = new Rectangle(originX + (int) Math.floor(ext.x * scale), originY + (int) Math.floor(ext.y * scale),
+                (int) Math.ceil(ext.width * scale) + 1, (int) Math.ceil(ext.height * scale) + 1);
+        }
+        int tx0 = Math.floorDiv(clip.x - originX, TILE_SIZE);
+        int tx1 = Math.floorDiv(clip.x + clip.width - 1 - originX, TILE_SIZE);
+        int ty0 = Math.floorDiv(clip.y - originY, TILE_SIZE);
+        int ty1 = Math.floorDiv(clip.y + clip.height - 1 - originY, TILE_SIZE);
+        int painted = 0;
+        for (int ty = ty0; ty <= ty1; ty++) {
+            for (int tx = tx0; tx <= tx1; tx++) {
+                TileKey key = new TileKey(scale, tx, ty);
+                BufferedImage img = tiles.get(key);
+                if (img == null) {
+                    img = renderTile(g, index, labels, scale, tx, ty);
+                    tiles.put(key, img);
+                }
+                g.drawImage(img, originX + tx * TILE_SIZE, originY + ty * TILE_SIZE, null);
+                painted++;
+            }
+        }
+        // 本次用到的图块位于访问顺序末尾，淘汰时不会被移除
+        evict(painted);
+    }
+
+    private BufferedImage renderTile(Graphics2D screen, LogicLayoutIndex index, LogicGraphLabel[] labels, double scale, int tx, int ty) {
+        BufferedImage img = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D tg = img.createGraphics();
+        try {
+            tg.setColor(tileBackground);
+            tg.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+            tg.setRenderingHints(screen.getRenderingHints());
+            tg.setFont(tileFont);
+            tg.setClip(0, 0, TILE_SIZE, TILE_SIZE);
+            // 与直接绘制相同的变换，只是原点平移到图块左上角（整数像素，相邻图块拼接无缝）
+            tg.translate(-tx * TILE_SIZE, -ty * TILE_SIZE);
+            tg.scale(scale, scale);
+            renderer.paint(tg, index, labels, tg.getClipBounds(), scale);
+        } finally {
+            tg.dispose();
+        }
+        return img;
+    }
+
+    private void evict(int keep) {
+        Iterator<TileKey> it = tiles.keySet().iterator();
+        while (tiles.size() > keep && tiles.size() * TILE_BYTES > memoryBudget && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    /**
+     * 对比新旧布局，返回需要重绘的布局区域：增删或位置、尺寸、文本、父子关系变化的节点，
+     * 连同其自身和父节点的连线扇形（新旧两份）。变化过多时返回 null
+     */
+    private static java.util.List<Rectangle> diffLayouts(LogicTreeLayout.Result oldLayout, LogicTreeLayout.Result newLayout) {
+        java.util.List<Rectangle> dirty = new ArrayList<>();
+        for (int s = 0; s < oldLayout.size(); s++) {
+            int ns = newLayout.getSlot(oldLayout.getNode(s));
+            if (ns >= 0 && sameNode(oldLayout, s, newLayout, ns)) continue;
+            addNodeArea(dirty, oldLayout, s);
+            if (ns >= 0) addNodeArea(dirty, newLayout, ns);
+            if (dirty.size() > MAX_DIRTY_RECTS) return null;
+        }
+        for (int ns = 0; ns < newLayout.size(); ns++) {
+            if (oldLayout.getSlot(newLayout.getNode(ns)) >= 0) continue;
+            addNodeArea(dirty, newLayout, ns);
+            if (dirty.size() > MAX_DIRTY_RECTS) return null;
+        }
+        return dirty;
+    }
+
+    private static boolean sameNode(LogicTreeLayout.Result a, int s, LogicTreeLayout.Result b, int t) {
+        if (a.getX(s) != b.getX(t) || a.getY(s) != b.getY(t)) return false;
+        if (a.getWidth(s) != b.getWidth(t) || a.getHeight(s) != b.getHeight(t)) return false;
+        if (a.getChildCount(s) != b.getChildCount(t)) return false;
+        if (!a.getLabel(s).equals(b.getLabel(t))) return false;
+        int ps = a.getParent(s), pt = b.getParent(t);
+        if (ps < 0 || pt < 0) return ps == pt;
+        return a.getNode(ps) == b.getNode(pt);
+    }
+
+    private static void addNodeArea(java.util.List<Rectangle> dirty, LogicTreeLayout.Result layout, int slot) {
+        Rectangle r = layout.getBounds(slot);
+        r.grow(2, 2);
+        dirty.add(r);
+        Rectangle fan = LogicLayoutIndex.getEdgeFanBounds(layout, slot);
+        if (fan != null) dirty.add(fan);
+        int p = layout.getParent(slot);
+        if (p >= 0) dirty.add(LogicLayoutIndex.getEdgeFanBounds(layout, p));
+    }
+
+    private static final class TileKey {
+        final double scale;
+        final int tx, ty;
+
+        TileKey(double scale, int tx, int ty) {
+            this.scale = scale;
+            this.tx = tx;
+            this.ty = ty;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TileKey)) return false;
+            TileKey k = (TileKey) o;
+            return Double.compare(scale, k.scale) == 0 && tx == k.tx && ty == k.ty;
+        }
+
+        @Override
+        public int hashCode() {
+            return (Double.hashCode(scale) * 31 + tx) * 31 + ty;
+        }
+    }
+}
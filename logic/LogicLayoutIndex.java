@@ -0,0 +1,205 @@
+package logic;
+import java.awt.*;
+import java.util.function.IntConsumer;
+
+/**
+ * 布局结果的空间索引（均匀网格）
+ * - 节点按矩形登记到覆盖的网格单元
+ * - 连线按“扇形”登记：每个父节点与其全部子节点之间的连线作为一个条目，外接矩形为
+ *   父节点底边到子节点顶边、父中心与首/末子中心的水平范围
+ * - 扇形内的子节点顶边同高、中心 x 递增，任一高度上连线的 x 随子节点序号单调，
+ *   因此与矩形相交的连线是连续的一段，visibleEdgeRange 二分求出，宽扇形只遍历可见的连线
+ * - 查询只返回与给定矩形（布局坐标）相交的条目，绘制代价随可见内容而非树大小增长
+ * - 网格单元大小按总面积/节点数自适应，单元数与节点数同阶
+ * - 查询使用内部去重标记，非线程安全（仅在 EDT 上使用）
+ */
+public class LogicLayoutIndex {
+    // 箭头宽度余量，保证箭头不被裁掉
+    private static final int EDGE_PAD = 8;
+
+    private final LogicTreeLayout.Result layout;
+    private final Grid nodeGrid;
+    private final Grid fanGrid;
+    private final int[] nodeStamp;
+    private final int[] fanStamp;
+    private int queryId = 0;
+
+    public LogicLayoutIndex(LogicTreeLayout.Result layout) {
+        this.layout = layout;
+        int n = layout.size();
+        Rectangle ext = layout.getExtent();
+        ext.grow(EDGE_PAD, EDGE_PAD);
+        long area = Math.max(1L, (long) ext.width * ext.height);
+        int cell = (int) Math.max(128, Math.ceil(Math.sqrt((double) area / Math.max(1, n))));
+        int[] x0 = new int[n], y0 = new int[n], x1 = new int[n], y1 = new int[n];
+        for (int i = 0; i < n; i++) {
+            x0[i] = layout.getX(i);
+            y0[i] = layout.getY(i);
+            x1[i] = x0[i] + layout.getWidth(i);
+            y1[i] = y0[i] + layout.getHeight(i);
+        }
+        nodeGrid = new Grid(ext, cell, n, x0, y0, x1, y1);
+        // 扇形外接矩形：无子节点的父节点登记为空矩形（x0 > x1），不会进入网格
+        int[] fx0 = new int[n], fy0 = new int[n], fx1 = new int[n], fy1 = new int[n];
+        for (int p = 0; p < n; p++) {
+            Rectangle fan = getEdgeFanBounds(layout, p);
+            if (fan == null) { fx0[p] = 1; fx1[p] = 0; continue; }
+            fx0[p] = fan.x;
+            fx1[p] = fan.x + fan.width;
+            fy0[p] = fan.y;
+            fy1[p] = fan.y + fan.height;
+        }
+        fanGrid = new Grid(ext, cell, n, fx0, fy0, fx1, fy1);
+        nodeStamp = new int[n];
+        fanStamp = new int[n];
+    }
+
+    public LogicTreeLayout.Result getLayout() { return layout; }
+
+    /** 父节点 slot 与其全部子节点之间连线的外接矩形（含箭头余量），无子节点返回 null */
+    public static Rectangle getEdgeFanBounds(LogicTreeLayout.Result layout, int p) {
+        int cc = layout.getChildCount(p);
+        if (cc == 0) return null;
+        int first = layout.getFirstChild(p), last = first + cc - 1;
+        int pcx = layout.getX(p) + layout.getWidth(p) / 2;
+        int firstCx = layout.getX(first) + layout.getWidth(first) / 2;
+        int lastCx = layout.getX(last) + layout.getWidth(last) / 2;
+        int x0 = Math.min(pcx, firstCx) - EDGE_PAD;
+        int x1 = Math.max(pcx, lastCx) + EDGE_PAD;
+        int y0 = layout.getY(p) + layout.getHeight(p) - EDGE_PAD;
+        int y1 = layout.getY(first) + EDGE_PAD;
+        return new Rectangle(x0, y0, x1 - x0, y1 - y0);
+    }
+
+    /** 回调所有与 area 相交的节点 slot（每个 slot 至多一次） */
+    public void queryNodes(Rectangle area, IntConsumer action) {
+        nodeGrid.query(area, nextQueryId(), nodeStamp, (slot) -> {
+            if (layout.getX(slot) <= area.x + area.width && layout.getX(slot) + layout.getWidth(slot) >= area.x
+                && layout.getY(slot) <= area.y + area.height && layout.getY(slot) + layout.getHeight(slot) >= area.y) {
+                action.accept(slot);
+            }
+        });
+    }
+
+    /** 包含点 (x, y)（布局坐标）的节点 slot，没有则返回 -1 */
+    public int nodeAt(int x, int y) {
+        int[] found = {-1};
+        nodeGrid.query(new Rectangle(x, y, 0, 0), nextQueryId(), nodeStamp, (slot) -> {
+            if (found[0] < 0 && layout.getBounds(slot).contains(x, y)) found[0] = slot;
+        });
+        return found[0];
+    }
+
+    /**
+     * 扇形 p 中连线可能与 area 相交的子节点 slot 区间，写入 range（首、末，含两端），没有时返回 false
+     * 结果偏保守（两侧各放宽 1），精确的相交判断由调用方完成
+     */
+    public boolean visibleEdgeRange(int p, Rectangle area, int[] range) {
+        int cc = layout.getChildCount(p);
+        if (cc == 0) return false;
+        int first = layout.getFirstChild(p);
+        double fromX = layout.getX(p) + layout.getWidth(p) / 2;
+        double fromY = layout.getY(p) + layout.getHeight(p);
+        double toY = layout.getY(first);
+        // 连线与 area 纵向重叠的高度区间 [ta, tb]
+        double ta = Math.max(fromY, area.y - 1), tb = Math.min(toY, area.y + area.height + 1);
+        if (ta > tb || toY <= fromY) return false;
+        double fa = (ta - fromY) / (toY - fromY), fb = (tb - fromY) / (toY - fromY);
+        double left = area.x - 1, right = area.x + area.width + 1;
+        // 第一条在 [ta, tb] 内到达 left 右侧的连线
+        int lo = 0, hi = cc;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            double dx = childCenterX(first + mid) - fromX;
+            if (fromX + dx * Math.max(fa, fb) >= left || fromX + dx * Math.min(fa, fb) >= left) hi = mid;
+            else lo = mid + 1;
+        }
+        int k0 = lo;
+        // 第一条在 [ta, tb] 内完全位于 right 右侧的连线
+        lo = k0;
+        hi = cc;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            double dx = childCenterX(first + mid) - fromX;
+            if (fromX + dx * fa > right && fromX + dx * fb > right) hi = mid;
+            else lo = mid + 1;
+        }
+        if (lo <= k0) return false;
+        range[0] = first + k0;
+        range[1] = first + lo - 1;
+        return true;
+    }
+
+    private int childCenterX(int slot) {
+        return layout.getX(slot) + layout.getWidth(slot) / 2;
+    }
+
+    /** 回调连线扇形可能与 area 相交的父节点 slot（每个 slot 至多一次） */
+    public void queryEdgeFans(Rectangle area, IntConsumer action) {
+        fanGrid.query(area, nextQueryId(), fanStamp, action);
+    }
+
+    private int nextQueryId() {
+        queryId++;
+        if (queryId == 0) {
+            // 计数回绕时清空标记，避免与旧查询混淆
+            java.util.Arrays.fill(nodeStamp, 0);
+            java.util.Arrays.fill(fanStamp, 0);
+            queryId = 1;
+        }
+        return queryId;
+    }
+
+    // 压缩存储的均匀网格：cellStart[c] .. cellStart[c+1] 为单元 c 中的条目
+    private static class Grid {
+        final int originX, originY, cell, cols, rows;
+        final int[] cellStart;
+        final int[] items;
+
+        Grid(Rectangle ext, int cell, int n, int[] x0, int[] y0, int[] x1, int[] y1) {
+            this.originX = ext.x;
+            this.originY = ext.y;
+            this.cell = cell;
+            this.cols = Math.max(1, (ext.width + cell - 1) / cell);
+            this.rows = Math.max(1, (ext.height + cell - 1) / cell);
+            int cells = cols * rows;
+            int[] count = new int[cells + 1];
+            for (int i = 0; i < n; i++) {
+                if (x0[i] > x1[i]) continue;
+                int c0 = col(x0[i]), c1 = col(x1[i]), r0 = row(y0[i]), r1 = row(y1[i]);
+                for (int r = r0; r <= r1; r++)
+                    for (int c = c0; c <= c1; c++) count[r * cols + c + 1]++;
+            }
+            for (int c = 0; c < cells; c++) count[c + 1] += count[c];
+            cellStart = count;
+            items = new int[count[cells]];
+            int[] fill = java.util.Arrays.copyOf(count, cells);
+            for (int i = 0; i < n; i++) {
+                if (x0[i] > x1[i]) continue;
+                int c0 = col(x0[i]), c1 = col(x1[i]), r0 = row(y0[i]), r1 = row(y1[i]);
+                for (int r = r0; r <= r1; r++)
+                    for (int c = c0; c <= c1; c++) items[fill[r * cols + c]++] = i;
+            }
+        }
+
+        int col(int x) { return Math.max(0, Math.min(cols - 1, Math.floorDiv(x - originX, cell))); }
+        int row(int y) { return Math.max(0, Math.min(rows - 1, Math.floorDiv(y - originY, cell))); }
+
+        void query(Rectangle area, int stamp, int[] seen, IntConsumer action) {
+            if (area.x > originX + cols * cell || area.y > originY + rows * cell) return;
+            if (area.x + area.width < originX || area.y + area.height < originY) return;
+            int c0 = col(area.x), c1 = col(area.x + area.width), r0 = row(area.y), r1 = row(area.y + area.height);
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    int cellIdx = r * cols + c;
+                    for (int k = cellStart[cellIdx]; k < cellStart[cellIdx + 1]; k++) {
+                        int item = items[k];
+                        if (seen[item] == stamp) continue;
+                        seen[item] = stamp;
+                        action.accept(item);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package logic;
+
+import java.util.*;
+
+/**
+ * LogicTreeModel 的节点索引：nodeId -> 节点、节点 -> 父节点
+ * - 首次按编号或节点求路径时才建立（整树替换只作废索引，打开文件与撤销不为此遍历整棵树）；
+ *   建立后由模型在插入 / 删除 / 交换时同步维护（先于监听器），按编号求路径只需沿父节点上溯，耗时与深度成正比
+ * - nodeId 重复时该编号记为 AMBIGUOUS，由模型按深度优先查找（与无索引时的结果一致）；
+ *   重复消除后首次查找再登记唯一的节点
+ * - 仅在 EDT 上使用
+ */
+class LogicNodeIndex {
+    // 编号存在但对应节点需要查找（重复或重复刚被消除）
+    static final LogicNode AMBIGUOUS = new LogicNode(LogicNode.NodeType.UNKNOWN, -1);
+
+    private final Map<Integer, LogicNode> byId = new HashMap<>();
+    // 出现多次的编号 -> 多出的次数
+    private final Map<Integer, Integer> extra = new HashMap<>();
+    // 节点 -> 父节点（根映射到 null），同时表示节点是否在树中
+    private final Map<LogicNode, LogicNode> parentOf = new IdentityHashMap<>();
+    // 是否已建立；未建立时增删改不需维护
+    private boolean built = false;
+
+    // 作废索引（整棵树替换），下次查询时重建
+    void invalidate() {
+        byId.clear();
+        extra.clear();
+        parentOf.clear();
+        built = false;
+    }
+
+    // 未建立时以 root 为根建立整个索引
+    void ensureBuilt(LogicNode root) {
+        if (built) return;
+        built = true;
+        if (root != null) addSubtree(root, null);
+    }
+
+    boolean contains(LogicNode node) {
+        return parentOf.containsKey(node);
+    }
+
+    LogicNode getParent(LogicNode node) {
+        return parentOf.get(node);
+    }
+
+    /** 编号对应的节点，不存在返回 null，需要查找时返回 AMBIGUOUS */
+    LogicNode get(int nodeId) {
+        return byId.get(nodeId);
+    }
+
+    // 查找得到的唯一节点（编号已不重复时登记，之后直接命中）
+    void resolved(int nodeId, LogicNode node) {
+        if (!extra.containsKey(nodeId) && byId.get(nodeId) == AMBIGUOUS) byId.put(nodeId, node);
+    }
+
+    // 登记 root 及其子孙，root 的父节点为 parent
+    void addSubtree(LogicNode root, LogicNode parent) {
+        if (!built) return;
+        parentOf.put(root, parent);
+        LogicTreeWalker.walk(root, (n, depth) -> {
+            for (LogicNode c : n.children) parentOf.put(c, n);
+            LogicNode prev = byId.putIfAbsent(n.nodeId, n);
+            if (prev != null) {
+                byId.put(n.nodeId, AMBIGUOUS);
+                extra.merge(n.nodeId, 1, Integer::sum);
+            }
+            return LogicTreeWalker.Action.CONTINUE;
+        });
+    }
+
+    // 撤销 root 及其子孙的登记
+    void removeSubtree(LogicNode root) {
+        if (!built) return;
+        LogicTreeWalker.walk(root, (n, depth) -> {
+            parentOf.remove(n);
+            Integer e = extra.get(n.nodeId);
+            if (e == null) {
+                byId.remove(n.nodeId);
+            } else if (e == 1) {
+                // 剩下的一个不知是哪个节点，留待查找时登记
+                extra.remove(n.nodeId);
+                byId.put(n.nodeId, AMBIGUOUS);
+            } else {
+                extra.put(n.nodeId, e - 1);
+            }
+            return LogicTreeWalker.Action.CONTINUE;
+        });
+    }
+
+    // 节点（连同子树）换到另一父节点下，子树内部不变
+    void setParent(LogicNode node, LogicNode parent) {
+        if (built) parentOf.put(node, parent);
+    }
+}
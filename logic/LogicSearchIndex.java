@@ -0,0 +1,295 @@
+package logic;
+
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import java.util.*;
+
+/**
+ * 节点搜索的倒排索引：词 -> 节点
+ * - 索引的内容：var 名、in 集合（pattern）、bfunc / filter 名、参数值（params、paramList、filterParamList）、
+ *   未知节点标签与注释中的词
+ * - 词统一小写；除完整取值外还按非字母数字字符与驼峰边界切分（"functionDocException" 也可由 "doc"、"exception" 查到），
+ *   中文连续字符从每个字起各登记一个词，因此可按任意位置的前缀查找
+ * - 词表为有序表，查询按前缀匹配；多个查询词取交集：从前缀区间内节点最少的词取候选，
+ *   其余词在候选节点自身的有序词表上二分查找
+ * - 作为 LogicTreeModel 的监听器随插入 / 删除 / 变更事件增量更新，整棵树替换时重建
+ * - 大树的整体重建可由 snapshot（EDT 上只收集节点与取值）+ build（切词与建表，可在后台线程执行）完成
+ * - 除 build 外仅在 EDT 上使用
+ */
+public class LogicSearchIndex implements TreeModelListener {
+    // 中文连续字符每个位置登记的词长上限
+    private static final int MAX_CJK_TERM = 8;
+
+    // 词 -> 含该词的节点（按引用）
+    private final TreeMap<String, Set<LogicNode>> postings = new TreeMap<>();
+    // 节点 -> 其登记的词（有序、无重复），用于多词查询与变更、删除时撤销旧词
+    private final Map<LogicNode, String[]> nodeTerms = new IdentityHashMap<>();
+
+    /**
+     * 整体重建所需的数据：先序排列的节点及各自的取值（在 EDT 上收集，之后不再读取节点内容）
+     */
+    public static final class Snapshot {
+        final LogicNode[] nodes;
+        final String[][] values;
+
+        Snapshot(LogicNode[] nodes, String[][] values) {
+            this.nodes = nodes;
+            this.values = values;
+        }
+
+        public int size() { return nodes.length; }
+    }
+
+    // 以 root 为根重建整个索引
+    public void rebuild(LogicNode root) {
+        postings.clear();
+        nodeTerms.clear();
+        if (root != null) addSubtree(root);
+    }
+
+    public int size() { return nodeTerms.size(); }
+
+    /**
+     * 收集 root 及其子孙的取值（在 EDT 上调用，只复制引用，不切词）
+     */
+    public static Snapshot snapshot(LogicNode root) {
+        List<LogicNode> nodes = new ArrayList<>();
+        List<String[]> values = new ArrayList<>();
+        if (root != null) {
+            LogicTreeWalker.walk(root, (n, depth) -> {
+                nodes.add(n);
+                values.add(valuesOf(n));
+                return LogicTreeWalker.Action.CONTINUE;
+            });
+        }
+        return new Snapshot(nodes.toArray(new LogicNode[0]), values.toArray(new String[0][]));
+    }
+
+    /**
+     * 由快照建立新索引（不读取节点内容，可在后台线程执行）
+     * @param cancelled 返回 true 时放弃并抛出 CancellationException
+     */
+    public static LogicSearchIndex build(Snapshot snapshot, java.util.function.BooleanSupplier cancelled) {
+        LogicSearchIndex index = new LogicSearchIndex();
+        // 先在 HashMap 中归并，最后一次排序成有序词表
+        Map<String, Set<LogicNode>> byTerm = new HashMap<>();
+        for (int i = 0; i < snapshot.nodes.length; i++) {
+            if ((i & 1023) == 0 && cancelled.getAsBoolean()) throw new java.util.concurrent.CancellationException();
+            LogicNode n = snapshot.nodes[i];
+            String[] terms = termsOf(snapshot.values[i]);
+            index.nodeTerms.put(n, terms);
+            for (String t : terms) byTerm.computeIfAbsent(t, k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(n);
+        }
+        index.postings.putAll(new TreeMap<>(byTerm));
+        return index;
+    }
+
+    /**
+     * 查询：按空白切分为若干词，节点须对每个词都有以其为前缀的登记词
+     * @param limit 返回数量上限
+     * @return 命中的节点中 nodeId 最小的 limit 个，按 nodeId 升序
+     */
+    public List<LogicNode> search(String query, int limit) {
+        List<String> words = new ArrayList<>();
+        for (String w : query.trim().toLowerCase(Locale.ROOT).split("\\s+")) {
+            if (!w.isEmpty()) words.add(w);
+        }
+        List<LogicNode> out = new ArrayList<>();
+        if (words.isEmpty() || limit <= 0) return out;
+        // 以前缀区间内节点最少的词为候选来源，其余词在候选节点自身的词表上检查
+        String first = null;
+        long best = Long.MAX_VALUE;
+        for (String w : words) {
+            long count = rangeSize(w, best);
+            if (count < best) {
+                best = count;
+                first = w;
+            }
+        }
+        if (best == 0) return out;
+        List<String> rest = new ArrayList<>(words);
+        rest.remove(first);
+        // 保留 nodeId 最小的 limit 个命中：堆顶为其中最大者
+        PriorityQueue<LogicNode> top = new PriorityQueue<>(Comparator.comparingInt((LogicNode n) -> n.nodeId).reversed());
+        Set<LogicNode> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Set<LogicNode> nodes : prefixRange(first).values()) {
+            for (LogicNode n : nodes) {
+                if (top.size() >= limit && n.nodeId >= top.peek().nodeId) continue;
+                if (!seen.add(n) || !matchesAll(nodeTerms.get(n), rest)) continue;
+                top.add(n);
+                if (top.size() > limit) top.poll();
+            }
+        }
+        out.addAll(top);
+        out.sort(Comparator.comparingInt(n -> n.nodeId));
+        return out;
+    }
+
+    private SortedMap<String, Set<LogicNode>> prefixRange(String prefix) {
+        return postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    // 前缀区间内各词的节点数之和（超过 bound 即停止计数）
+    private long rangeSize(String prefix, long bound) {
+        long count = 0;
+        for (Set<LogicNode> nodes : prefixRange(prefix).values()) {
+            count += nodes.size();
+            if (count >= bound) break;
+        }
+        return count;
+    }
+
+    // terms 有序：二分找到不小于 w 的第一个词，检查其是否以 w 为前缀
+    private static boolean matchesAll(String[] terms, List<String> words) {
+        for (String w : words) {
+            int i = Arrays.binarySearch(terms, w);
+            if (i < 0) i = -i - 1;
+            if (i >= terms.length || !terms[i].startsWith(w)) return false;
+        }
+        return true;
+    }
+
+    // 登记 root 及其子孙
+    public void addSubtree(LogicNode root) {
+        Deque<LogicNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            LogicNode n = stack.pop();
+            addNode(n);
+            for (LogicNode c : n.children) stack.push(c);
+        }
+    }
+
+    // 撤销 root 及其子孙的登记
+    public void removeSubtree(LogicNode root) {
+        Deque<LogicNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            LogicNode n = stack.pop();
+            removeNode(n);
+            for (LogicNode c : n.children) stack.push(c);
+        }
+    }
+
+    // 节点内容变化（子节点不变）时重新登记
+    public void updateNode(LogicNode node) {
+        removeNode(node);
+        addNode(node);
+    }
+
+    // 已登记的节点先撤销旧词（插入事件在重建期间被记录并回放时，同一节点可能再次登记）
+    private void addNode(LogicNode node) {
+        removeNode(node);
+        String[] terms = termsOf(valuesOf(node));
+        nodeTerms.put(node, terms);
+        for (String t : terms) {
+            postings.computeIfAbsent(t, k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(node);
+        }
+    }
+
+    private void removeNode(LogicNode node) {
+        String[] terms = nodeTerms.remove(node);
+        if (terms == null) return;
+        for (String t : terms) {
+            Set<LogicNode> nodes = postings.get(t);
+            if (nodes == null) continue;
+            nodes.remove(node);
+            if (nodes.isEmpty()) postings.remove(t);
+        }
+    }
+
+    // 节点中参与索引的全部取值（可含 null）
+    static String[] valuesOf(LogicNode node) {
+        int n = node.params.size() + node.filter.size() + node.comments.size() + 1;
+        for (Map<String, String> p : node.paramList) n += p.size();
+        for (Map<String, String> p : node.filterParamList) n += p.size();
+        String[] values = new String[n];
+        int i = 0;
+        for (String v : node.params.values()) values[i++] = v;
+        for (String v : node.filter.values()) values[i++] = v;
+        for (Map<String, String> p : node.paramList) {
+            for (String v : p.values()) values[i++] = v;
+        }
+        for (Map<String, String> p : node.filterParamList) {
+            for (String v : p.values()) values[i++] = v;
+        }
+        for (String c : node.comments) values[i++] = c;
+        values[i] = node.unknownTag;
+        return values;
+    }
+
+    // 取值切分出的全部登记词，有序、无重复
+    static String[] termsOf(String[] values) {
+        Set<String> terms = new HashSet<>();
+        for (String v : values) addValue(v, terms);
+        String[] sorted = terms.toArray(new String[0]);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    // 完整取值及其切分出的词（小写）
+    private static void addValue(String value, Set<String> terms) {
+        if (value == null) return;
+        String whole = value.trim().toLowerCase(Locale.ROOT);
+        if (whole.isEmpty()) return;
+        terms.add(whole);
+        int len = value.length();
+        int start = -1;
+        for (int i = 0; i <= len; i++) {
+            char c = i < len ? value.charAt(i) : ' ';
+            boolean word = Character.isLetterOrDigit(c);
+            if (start >= 0 && (!word || isBoundary(value.charAt(i - 1), c))) {
+                addToken(value.substring(start, i), terms);
+                start = -1;
+            }
+            if (word && start < 0) start = i;
+        }
+    }
+
+    // 驼峰边界（小写/数字后接大写）或中文与其他字符的交界
+    private static boolean isBoundary(char prev, char c) {
+        if (isCjk(prev) != isCjk(c)) return true;
+        return Character.isUpperCase(c) && (Character.isLowerCase(prev) || Character.isDigit(prev));
+    }
+
+    private static void addToken(String token, Set<String> terms) {
+        String t = token.toLowerCase(Locale.ROOT);
+        if (!isCjk(t.charAt(0))) {
+            terms.add(t);
+            return;
+        }
+        for (int i = 0; i < t.length(); i++) terms.add(t.substring(i, Math.min(t.length(), i + MAX_CJK_TERM)));
+    }
+
+    private static boolean isCjk(char c) {
+        return Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN;
+    }
+
+    @Override
+    public void treeNodesChanged(TreeModelEvent e) {
+        Object[] children = e.getChildren();
+        if (children == null) {
+            // 根节点变化
+            Object last = e.getTreePath().getLastPathComponent();
+            if (last instanceof LogicNode) updateNode((LogicNode) last);
+            return;
+        }
+        for (Object c : children) updateNode((LogicNode) c);
+    }
+
+    @Override
+    public void treeNodesInserted(TreeModelEvent e) {
+        for (Object c : e.getChildren()) addSubtree((LogicNode) c);
+    }
+
+    @Override
+    public void treeNodesRemoved(TreeModelEvent e) {
+        for (Object c : e.getChildren()) removeSubtree((LogicNode) c);
+    }
+
+    @Override
+    public void treeStructureChanged(TreeModelEvent e) {
+        Object root = e.getTreePath().getPathComponent(0);
+        rebuild(root instanceof LogicNode ? (LogicNode) root : null);
+    }
+}
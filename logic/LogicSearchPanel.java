@@ -0,0 +1,173 @@
+package logic;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreePath;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 树上方的搜索面板
+ * - 输入即查询 LogicSearchIndex（var、in 集合、bfunc/filter 名、参数值、注释），空格分隔的多个词取交集
+ * - 结果列表显示节点文本，选中结果即在树中选中并滚动到该节点
+ * - 索引随树模型事件增量更新；模型变化后按当前输入刷新结果
+ * - 整棵树替换（打开、撤销）时在 EDT 上只收集节点取值，切词与建表在后台完成后换入；
+ *   期间的编辑事件先记录，换入后按序回放，期间的查询暂无结果
+ */
+public class LogicSearchPanel extends JPanel {
+    // 结果数量上限
+    private static final int MAX_RESULTS = 200;
+
+    private final JTree tree;
+    private final LogicTreeModel treeModel;
+    private final JLabel label = new JLabel("搜索:");
+    private LogicSearchIndex index = new LogicSearchIndex();
+    // 后台重建：进行中的任务、其代数（更新的重建使旧结果作废）与期间记录的编辑
+    private SwingWorker<LogicSearchIndex, Void> rebuildWorker = null;
+    private int rebuildGeneration = 0;
+    private final List<Runnable> pendingEdits = new ArrayList<>();
+    private final JTextField field = new JTextField();
+    private final DefaultListModel<LogicNode> results = new DefaultListModel<>();
+    private final JList<LogicNode> resultList = new JList<>(results);
+    private final JScrollPane resultScroll = new JScrollPane(resultList);
+    private boolean refreshPending = false;
+
+    public LogicSearchPanel(JTree tree, LogicTreeModel treeModel) {
+        super(new BorderLayout());
+        this.tree = tree;
+        this.treeModel = treeModel;
+        startRebuild(treeModel.getLogicRoot());
+        // 更新索引后刷新结果（合并同一次编辑产生的多个事件）
+        treeModel.addTreeModelListener(new TreeModelListener() {
+            @Override public void treeNodesChanged(TreeModelEvent e) { apply(() -> index.treeNodesChanged(e)); }
+            @Override public void treeNodesInserted(TreeModelEvent e) { apply(() -> index.treeNodesInserted(e)); }
+            @Override public void treeNodesRemoved(TreeModelEvent e) { apply(() -> index.treeNodesRemoved(e)); }
+            @Override
+            public void treeStructureChanged(TreeModelEvent e) {
+                Object root = e.getTreePath().getPathComponent(0);
+                startRebuild(root instanceof LogicNode ? (LogicNode) root : null);
+                scheduleRefresh();
+            }
+        });
+
+        field.setToolTipText("搜索变量、集合、函数名、参数值或注释");
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e) { refresh(); }
+            @Override public void removeUpdate(DocumentEvent e) { refresh(); }
+            @Override public void changedUpdate(DocumentEvent e) { refresh(); }
+        });
+        // 回车跳到第一个结果，方向键下移入结果列表
+        field.addActionListener(e -> {
+            if (!results.isEmpty()) resultList.setSelectedIndex(0);
+        });
+        field.getInputMap().put(KeyStroke.getKeyStroke("DOWN"), "toResults");
+        field.getActionMap().put("toResults", new AbstractAction() {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent e) {
+                if (results.isEmpty()) return;
+                resultList.requestFocusInWindow();
+                if (resultList.getSelectedIndex() < 0) resultList.setSelectedIndex(0);
+            }
+        });
+
+        resultList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        resultList.setVisibleRowCount(6);
+        resultList.addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) jumpTo(resultList.getSelectedValue());
+        });
+        resultScroll.setVisible(false);
+
+        JPanel top = new JPanel(new BorderLayout(4, 0));
+        top.add(label, BorderLayout.WEST);
+        top.add(field, BorderLayout.CENTER);
+        add(top, BorderLayout.NORTH);
+        add(resultScroll, BorderLayout.CENTER);
+    }
+
+    // 聚焦输入框并全选已有内容
+    public void focusField() {
+        field.requestFocusInWindow();
+        field.selectAll();
+    }
+
+    // 增量编辑：重建进行中时记录，换入新索引后回放
+    private void apply(Runnable edit) {
+        if (rebuildWorker != null) pendingEdits.add(edit);
+        else edit.run();
+        scheduleRefresh();
+    }
+
+    private void startRebuild(LogicNode root) {
+        final int generation = ++rebuildGeneration;
+        if (rebuildWorker != null) rebuildWorker.cancel(true);
+        pendingEdits.clear();
+        index = new LogicSearchIndex();
+        if (root == null) {
+            rebuildWorker = null;
+            label.setText("搜索:");
+            return;
+        }
+        final LogicSearchIndex.Snapshot snapshot = LogicSearchIndex.snapshot(root);
+        label.setText("搜索(索引中):");
+        rebuildWorker = new SwingWorker<LogicSearchIndex, Void>() {
+            @Override
+            protected LogicSearchIndex doInBackground() {
+                return LogicSearchIndex.build(snapshot, this::isCancelled);
+            }
+
+            @Override
+            protected void done() {
+                if (generation != rebuildGeneration || isCancelled()) return;
+                rebuildWorker = null;
+                try {
+                    index = get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (java.util.concurrent.ExecutionException ex) {
+                    index = new LogicSearchIndex();
+                    index.rebuild(root);
+                }
+                for (Runnable edit : pendingEdits) edit.run();
+                pendingEdits.clear();
+                label.setText("搜索:");
+                refresh();
+            }
+        };
+        rebuildWorker.execute();
+    }
+
+    private void scheduleRefresh() {
+        if (refreshPending) return;
+        refreshPending = true;
+        SwingUtilities.invokeLater(() -> {
+            refreshPending = false;
+            refresh();
+        });
+    }
+
+    private void refresh() {
+        String q = field.getText();
+        List<LogicNode> hits = q.trim().isEmpty() ? java.util.Collections.emptyList() : index.search(q, MAX_RESULTS);
+        results.clear();
+        for (LogicNode n : hits) results.addElement(n);
+        boolean show = !q.trim().isEmpty();
+        if (resultScroll.isVisible() != show) {
+            resultScroll.setVisible(show);
+            revalidate();
+        }
+    }
+
+    // 在树中选中节点并滚动到可见位置
+    private void jumpTo(LogicNode node) {
+        if (node == null) return;
+        TreePath p = treeModel.findPath(node);
+        if (p == null) return;
+        tree.setSelectionPath(p);
+        tree.scrollPathToVisible(p);
+    }
+}
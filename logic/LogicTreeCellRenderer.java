@@ -0,0 +1,189 @@
+package logic;
+
+import javax.swing.*;
+import javax.swing.plaf.basic.BasicHTML;
+import javax.swing.text.View;
+import javax.swing.tree.DefaultTreeCellRenderer;
+import java.awt.*;
+import java.util.*;
+
+/**
+ * 左侧树的单元格渲染器
+ * - 节点文本渲染为 HTML：编号蓝色，关键字紫色，其余黑色；带注释的节点右侧画角标，showComments 时附注释段落
+ * - 每个节点的 HTML 按节点缓存，文本、注释或 showComments 变化时才重建（滚动时不再分词、拼接 HTML）
+ * - 解析后的 View（每个约 26KB）只为最近渲染的 MAX_VIEWS 个节点保留，字体或前景色变化时重建，
+ *   滚动回已渲染的行时 JLabel 不再重新解析 HTML
+ * - 折叠节点的"子孙有错误"标记直接查校验时生成的子孙错误计数，不再遍历子树
+ * - 大模型模式下不内嵌注释段落（注释改在侧栏显示），保证每行单行等高
+ * - 仅在 EDT 上使用
+ */
+public class LogicTreeCellRenderer extends DefaultTreeCellRenderer {
+    // 树中额外着色的关键字（比图中多 rules / rule）
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+        "forall", "exists", "and", "or", "with", "in", "formula", "implies", "not", "rules", "rule"));
+    private static final Color BADGE_COLOR = new Color(255, 140, 0);
+    // 保留解析结果的节点数（覆盖若干屏的行）
+    private static final int MAX_VIEWS = 1024;
+
+    // 单个节点的渲染缓存
+    private static final class Entry {
+        String label;
+        java.util.List<String> comments;
+        boolean showComments;
+        String html;
+        View view;
+        Font viewFont;
+        Color viewForeground;
+    }
+
+    // 节点未重写 equals/hashCode，按引用对应；删除的节点随之回收
+    private final Map<LogicNode, Entry> cache = new WeakHashMap<>();
+    // 持有 View 的条目，按访问顺序淘汰最久未渲染的
+    private final LinkedHashMap<Entry, Boolean> viewOrder = new LinkedHashMap<Entry, Boolean>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Entry, Boolean> eldest) {
+            if (size() <= MAX_VIEWS) return false;
+            eldest.getKey().view = null;
+            return true;
+        }
+    };
+    // 安装缓存的 View 时屏蔽 text 属性事件，避免 JLabel 重新解析 HTML
+    private boolean installingView = false;
+    private boolean errorLine, hasComments, badgeFlipped;
+    // 是否在行内展开注释段落（大模型模式下关闭）
+    private boolean inlineComments = true;
+
+    public boolean isInlineComments() { return inlineComments; }
+
+    // 切换行内注释后所有缓存的 HTML 都需重建
+    public void setInlineComments(boolean inlineComments) {
+        if (this.inlineComments == inlineComments) return;
+        this.inlineComments = inlineComments;
+        cache.clear();
+        viewOrder.clear();
+    }
+
+    @Override
+    public Component getTreeCellRendererComponent(JTree tree, Object value, boolean sel, boolean expanded, boolean leaf, int row, boolean hasFocus) {
+        super.getTreeCellRendererComponent(tree, value, sel, expanded, leaf, row, hasFocus);
+        errorLine = false;
+        hasComments = false;
+        badgeFlipped = false;
+        // 树节点即 LogicNode（未加载时的根为占位字符串，按纯文本显示）
+        if (!(value instanceof LogicNode)) return this;
+        LogicNode ln = (LogicNode) value;
+        Entry entry = cache.get(ln);
+        if (entry == null) {
+            entry = new Entry();
+            cache.put(ln, entry);
+        }
+        String label = getText();
+        boolean showComments = inlineComments && ln.showComments;
+        if (entry.html == null || !label.equals(entry.label) || entry.showComments != showComments || !entry.comments.equals(ln.comments)) {
+            entry.label = label;
+            entry.comments = new ArrayList<>(ln.comments);
+            entry.showComments = showComments;
+            entry.html = buildHtml(label, ln, showComments);
+            entry.view = null;
+        }
+        hasComments = !ln.comments.isEmpty();
+        badgeFlipped = hasComments && showComments;
+        if (entry.html != null) installView(entry);
+        // 错误标记：节点自身有错误，或节点折叠且其子孙包含错误
+        if (LogicValidator.errorNodeMap.containsKey(ln.nodeId)) {
+            errorLine = true;
+        } else if (!expanded && !leaf) {
+            errorLine = LogicValidator.hasErrorBelow(ln);
+        }
+        return this;
+    }
+
+    // 用缓存的 View 代替 setText 触发的解析；View 绑定创建时的字体与前景色（选中行前景色不同）
+    private void installView(Entry entry) {
+        Font font = getFont();
+        Color fg = getForeground();
+        if (entry.view == null || !Objects.equals(font, entry.viewFont) || !Objects.equals(fg, entry.viewForeground)) {
+            entry.view = BasicHTML.createHTMLView(this, entry.html);
+            entry.viewFont = font;
+            entry.viewForeground = fg;
+        }
+        viewOrder.put(entry, Boolean.TRUE);
+        installingView = true;
+        try {
+            setText(entry.html);
+        } finally {
+            installingView = false;
+        }
+        putClientProperty(BasicHTML.propertyKey, entry.view);
+    }
+
+    @Override
+    protected void firePropertyChange(String propertyName, Object oldValue, Object newValue) {
+        if (installingView && "text".equals(propertyName)) return;
+        super.firePropertyChange(propertyName, oldValue, newValue);
+    }
+
+    // 节点文本的 HTML；文本不以 "[编号]" 开头时返回 null（按纯文本显示）
+    private static String buildHtml(String s, LogicNode ln, boolean showComments) {
+        if (!s.startsWith("[")) return null;
+        int idx = s.indexOf("]");
+        if (idx <= 0) return null;
+        String idStr = s.substring(0, idx + 1);
+        String content = s.substring(idx + 1).trim();
+        StringBuilder html = new StringBuilder("<html><span style='color:#3C78FF;'>").append(esc(idStr)).append("</span> ");
+        // 将 content 按空格分词，对关键字上色
+        String[] parts = content.split(" ");
+        for (int i = 0; i < parts.length; i++) {
+            String color = isKeyword(parts[i]) ? "purple" : "black";
+            html.append("<span style='color:").append(color).append(";'>").append(esc(parts[i])).append("</span>");
+            if (i < parts.length - 1) html.append(" ");
+        }
+        if (!ln.comments.isEmpty()) {
+            // 先在文本末尾增加若干 &nbsp; 作为角标占位（放在注释块之前，避免在 block 后产生单独空行）
+            html.append("&nbsp;&nbsp;&nbsp;&nbsp;");
+            if (showComments) {
+                String commentHtml = esc(ln.getCommentsAsHtml()).replace("\n", "<br/>");
+                html.append("<div style='font-size:smaller;color:#666;margin-top:6px;'>").append(commentHtml).append("</div>");
+            }
+        } else {
+            // 即便没有注释，也在末尾留一点空隙以保持视觉一致性
+            html.append("&nbsp;&nbsp;");
+        }
+        return html.append("</html>").toString();
+    }
+
+    // 简单 HTML 转义
+    private static String esc(String str) {
+        return str.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    // 词（忽略非字母字符与大小写）是否为关键字
+    private static boolean isKeyword(String word) {
+        StringBuilder sb = new StringBuilder(word.length());
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z')) sb.append(Character.toLowerCase(c));
+        }
+        return KEYWORDS.contains(sb.toString());
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (errorLine) {
+            g.setColor(Color.RED);
+            int y = getHeight() - 2;
+            g.fillRect(2, y, getWidth() - 4, 2);
+        }
+        if (hasComments) {
+            // 右侧固定位置（垂直居中）的小三角；注释展开时指向左
+            g.setColor(BADGE_COLOR);
+            int size = 10;
+            int x = getWidth() - size - 4; // 靠右，不覆盖文本
+            int y = (getHeight() - size) / 2; // 垂直居中
+            int[] ys = new int[] { y, y + size, y + size / 2 };
+            int[] xs = badgeFlipped ? new int[] { x + size, x + size, x } : new int[] { x, x, x + size };
+            g.fillPolygon(xs, ys, 3);
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package logic;
+import java.awt.*;
+import java.util.*;
+
+/**
+ * 逻辑树布局引擎（LogicGraphPanel 与 LogicGraphSvgExporter 共用）
+ * - 先按层序把树展平为数组，同一父节点的子节点在数组中连续
+ * - 逆序扫描一遍（后序语义）计算子树宽度，正序扫描一遍（先序语义）确定节点位置
+ * - 整体 O(n)，不递归，结果不可变
+ * - 每个节点的文本只生成一次并随结果保存，绘制时直接复用
+ * - 增量布局（relayout）：以上一次完整布局为记忆，未变化节点的文本、尺寸与子树宽度直接复用，
+ *   子树宽度的重算只沿变化节点的祖先链向上传播
+ * - 读取节点（子节点列表、文本）与计算（测量、宽度、位置）可以分开：snapshot 在持有模型的线程上展平树并生成文本，
+ *   layout(Snapshot, ...) 只读取快照（以及节点的引用与 nodeId），可在后台线程执行，期间模型的修改不影响结果
+ */
+public class LogicTreeLayout {
+    /** 节点尺寸测量（面板与 SVG 导出使用不同的字体与 padding），label 为节点文本 */
+    public interface NodeMeasurer {
+        Dimension measure(LogicNode node, String label);
+    }
+
+    private final int hGap;
+    private final int vGap;
+
+    public LogicTreeLayout(int hGap, int vGap) {
+        this.hGap = hGap;
+        this.vGap = vGap;
+    }
+
+    /**
+     * 计算整棵树的布局
+     * @param root 根节点
+     * @param rootCenterX 根节点中心的 x 坐标
+     * @param topY 根节点上边缘的 y 坐标
+     * @param measurer 节点尺寸测量
+     */
+    public Result layout(LogicNode root, int rootCenterX, int topY, NodeMeasurer measurer) {
+        return layout(root, rootCenterX, topY, measurer, Integer.MAX_VALUE, null, null);
+    }
+
+    /**
+     * 以上一次的完整布局为基础重新布局（结果与 layout 相同）
+     * - previous 中存在且不在 changed 中的节点不再生成文本、不再测量，直接复用其文本与尺寸
+     * - 尺寸与子节点列表都未变、且没有子节点子树宽度变化的节点直接复用子树宽度；
+     *   宽度变化逐层向父节点传播，到宽度不再变化的祖先为止
+     * - 子节点的增删、移动与交换按子节点列表比对自动识别，changed 只需包含文本变化的节点
+     * @param previous 同一 measurer 下的上一次布局（null 或仅含顶层时等同 layout）
+     * @param changed 自 previous 以来文本可能变化的节点；null 表示全部节点都重新生成文本并测量
+     */
+    public Result relayout(Result previous, Set<LogicNode> changed, LogicNode root, int rootCenterX, int topY, NodeMeasurer measurer) {
+        return layout(root, rootCenterX, topY, measurer, Integer.MAX_VALUE, previous, changed);
+    }
+
+    /**
+     * 只布局树的前若干层：取节点总数不超过 maxNodes 的最大层数（至少包含根），更深的节点不出现在结果中
+     * - 用于大树在完整布局完成前先显示顶层
+     */
+    public Result layoutTopLevels(LogicNode root, int rootCenterX, int topY, NodeMeasurer measurer, int maxNodes) {
+        return layoutTopLevels(null, null, root, rootCenterX, topY, measurer, maxNodes);
+    }
+
+    /** 同 layoutTopLevels，并按 relayout 的规则复用 previous 中未变化节点的文本与尺寸 */
+    public Result layoutTopLevels(Result previous, Set<LogicNode> changed, LogicNode root, int rootCenterX, int topY, NodeMeasurer measurer, int maxNodes) {
+        int depth = 0;
+        if (root != null) {
+            long total = 1;
+            ArrayList<LogicNode> level = new ArrayList<>();
+            level.add(root);
+            while (true) {
+                ArrayList<LogicNode> next = new ArrayList<>();
+                for (LogicNode node : level) next.addAll(node.children);
+                if (next.isEmpty() || total + next.size() > maxNodes) break;
+                total += next.size();
+                depth++;
+                level = next;
+            }
+        }
+        return layout(root, rootCenterX, topY, measurer, depth, previous, changed);
+    }
+
+    /**
+     * 整棵树的布局输入：层序展平的节点与子节点区间、各节点的文本（不可变，可交给其他线程）
+     * - 由 snapshot 在持有模型的线程上生成，之后模型的修改不影响快照
+     */
+    public static final class Snapshot {
+        private final Result previous;
+        private final LogicNode[] nodes;
+        private final int[] parent, firstChild, childCount;
+        private final String[] labels;
+        // measure[i]：文本为新生成，需要测量（否则复用 previous 中的文本与尺寸）
+        private final boolean[] measure;
+        private final int maxDepth;
+
+        private Snapshot(Result previous, LogicNode[] nodes, int[] parent, int[] firstChild, int[] childCount,
+                         String[] labels, boolean[] measure, int maxDepth) {
+            this.previous = previous;
+            this.nodes = nodes;
+            this.parent = parent;
+            this.firstChild = firstChild;
+            this.childCount = childCount;
+            this.labels = labels;
+            this.measure = measure;
+            this.maxDepth = maxDepth;
+        }
+
+        public int size() { return nodes.length; }
+    }
+
+    /**
+     * 读取整棵树生成布局输入（须在持有模型的线程上调用，如 EDT）：只展平并为新节点与 changed 中的节点生成文本，不测量
+     * @param previous / changed 同 relayout
+     */
+    public Snapshot snapshot(Result previous, Set<LogicNode> changed, LogicNode root) {
+        return snapshot(previous, changed, root, Integer.MAX_VALUE);
+    }
+
+    // maxDepth 层（根为第 0 层）以下的节点视为叶子
+    private Result layout(LogicNode root, int rootCenterX, int topY, NodeMeasurer measurer, int maxDepth,
+                          Result previous, Set<LogicNode> changed) {
+        if (root == null) return new Result(new LogicNode[0], new String[0], new int[0], new int[0], new int[0], new int[0], new int[0], new int[0], new int[0], new int[0], true);
+        Snapshot snapshot = snapshot(previous, changed, root, maxDepth);
+        return layout(snapshot, rootCenterX, topY, measurer);
+    }
+
+    private Snapshot snapshot(Result previous, Set<LogicNode> changed, LogicNode root, int maxDepth) {
+        if (root == null) return new Snapshot(null, new LogicNode[0], new int[0], new int[0], new int[0], new String[0], new boolean[0], maxDepth);
+        // 只截取了顶层的结果中，子树宽度不是完整子树的宽度，不能作为记忆
+        if (previous != null && !previous.complete) previous = null;
+        // 1. 层序展平：nodes[i] 的子节点位于 nodes[firstChild[i] .. firstChild[i]+childCount[i])
+        ArrayList<LogicNode> order = new ArrayList<>();
+        order.add(root);
+        int[] parent = new int[16];
+        int[] firstChild = new int[16];
+        int[] childCount = new int[16];
+        parent[0] = -1;
+        // 层序展平时 levelEnd 为当前层之后第一个 slot
+        int depth = 0, levelEnd = 1;
+        for (int i = 0; i < order.size(); i++) {
+            if (i == levelEnd) {
+                depth++;
+                levelEnd = order.size();
+            }
+            LogicNode node = order.get(i);
+            int cc = depth < maxDepth ? node.children.size() : 0;
+            int need = order.size() + cc;
+            if (need > parent.length) {
+                int cap = Math.max(need, parent.length * 2);
+                parent = Arrays.copyOf(parent, cap);
+                firstChild = Arrays.copyOf(firstChild, cap);
+                childCount = Arrays.copyOf(childCount, cap);
+            }
+            firstChild[i] = order.size();
+            childCount[i] = cc;
+            for (int k = 0; k < cc; k++) {
+                parent[order.size()] = i;
+                order.add(node.children.get(k));
+            }
+        }
+        int n = order.size();
+        LogicNode[] nodes = order.toArray(new LogicNode[0]);
+        String[] labels = new String[n];
+        boolean[] measure = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            int ps = previous == null ? -1 : previous.getSlot(nodes[i]);
+            if (ps >= 0 && changed != null && !changed.contains(nodes[i])) {
+                labels[i] = previous.labels[ps];
+            } else {
+                labels[i] = nodes[i].toString();
+                measure[i] = true;
+            }
+        }
+        return new Snapshot(previous, nodes, Arrays.copyOf(parent, n), Arrays.copyOf(firstChild, n), Arrays.copyOf(childCount, n),
+            labels, measure, maxDepth);
+    }
+
+    /**
+     * 按快照计算布局（结果与对同一时刻的树调用 relayout 相同）；不读取节点内容，可在后台线程执行
+     */
+    public Result layout(Snapshot snapshot, int rootCenterX, int topY, NodeMeasurer measurer) {
+        Result previous = snapshot.previous;
+        int n = snapshot.nodes.length;
+        if (n == 0) return new Result(new LogicNode[0], new String[0], new int[0], new int[0], new int[0], new int[0], new int[0], new int[0], new int[0], new int[0], true);
+        LogicNode[] nodes = snapshot.nodes;
+        String[] labels = snapshot.labels;
+        int[] parent = snapshot.parent, firstChild = snapshot.firstChild, childCount = snapshot.childCount;
+        int[] w = new int[n], h = new int[n];
+        // prevSlot[i]：节点在 previous 中的 slot（-1 为新节点）；sameShape[i]：尺寸与子节点列表都与 previous 相同
+        int[] prevSlot = new int[n];
+        boolean[] sameShape = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            int ps = previous == null ? -1 : previous.getSlot(nodes[i]);
+            prevSlot[i] = ps;
+            if (!snapshot.measure[i]) {
+                w[i] = previous.w[ps];
+                h[i] = previous.h[ps];
+            } else {
+                Dimension d = measurer.measure(nodes[i], labels[i]);
+                w[i] = d.width;
+                h[i] = d.height;
+            }
+            sameShape[i] = ps >= 0 && w[i] == previous.w[ps] && h[i] == previous.h[ps]
+                && sameChildren(previous, ps, nodes, firstChild[i], childCount[i]);
+        }
+        // 2. 逆序扫描：子节点总在父节点之后，因此父节点处理时子树宽度都已就绪
+        // childWidthChanged[i]：i 的某个子节点的子树宽度与 previous 中不同
+        int[] subtreeWidth = new int[n];
+        boolean[] childWidthChanged = new boolean[n];
+        for (int i = n - 1; i >= 0; i--) {
+            int ps = prevSlot[i];
+            if (sameShape[i] && !childWidthChanged[i]) {
+                subtreeWidth[i] = previous.subtreeWidth[ps];
+            } else {
+                int cc = childCount[i];
+                int total = 0;
+                for (int k = 0; k < cc; k++) total += subtreeWidth[firstChild[i] + k];
+                if (cc > 0) total += (cc - 1) * hGap;
+                subtreeWidth[i] = Math.max(w[i], total);
+            }
+            if (i > 0 && (ps < 0 || subtreeWidth[i] != previous.subtreeWidth[ps])) childWidthChanged[parent[i]] = true;
+        }
+        // 3. 正序扫描：父节点位置确定后依次排布其子节点
+        int[] centerX = new int[n], x = new int[n], y = new int[n];
+        centerX[0] = rootCenterX;
+        y[0] = topY;
+        for (int i = 0; i < n; i++) {
+            x[i] = centerX[i] - w[i] / 2;
+            int cc = childCount[i];
+            if (cc == 0) continue;
+            int curX = centerX[i] - subtreeWidth[i] / 2;
+            int childY = y[i] + h[i] + vGap;
+            for (int k = 0; k < cc; k++) {
+                int c = firstChild[i] + k;
+                centerX[c] = curX + subtreeWidth[c] / 2;
+                y[c] = childY;
+                curX += subtreeWidth[c] + hGap;
+            }
+        }
+        return new Result(nodes, labels, parent, firstChild, childCount, x, y, w, h, subtreeWidth, snapshot.maxDepth == Integer.MAX_VALUE);
+    }
+
+    // 节点的子节点（nodes[first .. first+count)）是否与 previous 中 slot ps 的子节点依次相同
+    private static boolean sameChildren(Result previous, int ps, LogicNode[] nodes, int first, int count) {
+        if (previous.childCount[ps] != count) return false;
+        int pf = previous.firstChild[ps];
+        for (int k = 0; k < count; k++) {
+            if (previous.nodes[pf + k] != nodes[first + k]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 不可变的布局结果：节点按层序编号为 slot，可按节点、nodeId 或 slot 查询矩形
+     * - nodeId 到 slot 的映射为 int 数组，查询 O(1)
+     */
+    public static class Result {
+        private final LogicNode[] nodes;
+        private final String[] labels;
+        private final int[] parent, firstChild, childCount;
+        private final int[] x, y, w, h;
+        // 子树宽度（增量布局的记忆）
+        private final int[] subtreeWidth;
+        // 是否为完整布局（layoutTopLevels 截取的结果为 false）
+        private final boolean complete;
+        // slotById[nodeId] = slot + 1（0 表示不存在）
+        private final int[] slotById;
+        // 仅当 nodeId 过于稀疏或重复时才使用的后备映射（按节点对象），在构造时建好，布局可跨线程共享
+        private final Map<LogicNode, Integer> slotOf;
+        private final boolean idsUnique;
+        private final Rectangle extent;
+
+        Result(LogicNode[] nodes, String[] labels, int[] parent, int[] firstChild, int[] childCount, int[] x, int[] y, int[] w, int[] h,
+               int[] subtreeWidth, boolean complete) {
+            this.nodes = nodes;
+            this.labels = labels;
+            this.parent = parent;
+            this.firstChild = firstChild;
+            this.childCount = childCount;
+            this.x = x; this.y = y; this.w = w; this.h = h;
+            this.subtreeWidth = subtreeWidth;
+            this.complete = complete;
+            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+            int maxId = -1;
+            boolean idsValid = true;
+            for (int i = 0; i < nodes.length; i++) {
+                int id = nodes[i].nodeId;
+                if (id < 0) idsValid = false;
+                maxId = Math.max(maxId, id);
+                minX = Math.min(minX, x[i]);
+                minY = Math.min(minY, y[i]);
+                maxX = Math.max(maxX, x[i] + w[i]);
+                maxY = Math.max(maxY, y[i] + h[i]);
+            }
+            this.extent = nodes.length == 0 ? new Rectangle() : new Rectangle(minX, minY, maxX - minX, maxY - minY);
+            boolean unique = idsValid && maxId < nodes.length * 8L + 1024;
+            int[] table = unique ? new int[maxId + 1] : new int[0];
+            for (int i = 0; unique && i < nodes.length; i++) {
+                int id = nodes[i].nodeId;
+                if (table[id] != 0) unique = false;
+                else table[id] = i + 1;
+            }
+            this.idsUnique = unique;
+            this.slotById = unique ? table : new int[0];
+            if (unique) {
+                this.slotOf = null;
+            } else {
+                Map<LogicNode, Integer> m = new IdentityHashMap<>(nodes.length * 2);
+                for (int i = 0; i < nodes.length; i++) m.put(nodes[i], i);
+                this.slotOf = m;
+            }
+        }
+
+        public int size() { return nodes.length; }
+        /** 是否包含整棵树（顶层预览为 false） */
+        public boolean isComplete() { return complete; }
+        public LogicNode getNode(int slot) { return nodes[slot]; }
+        /** 布局时节点的文本（LogicNode.toString） */
+        public String getLabel(int slot) { return labels[slot]; }
+        /** 父节点 slot，根为 -1 */
+        public int getParent(int slot) { return parent[slot]; }
+        public int getFirstChild(int slot) { return firstChild[slot]; }
+        public int getChildCount(int slot) { return childCount[slot]; }
+        public int getX(int slot) { return x[slot]; }
+        public int getY(int slot) { return y[slot]; }
+        public int getWidth(int slot) { return w[slot]; }
+        public int getHeight(int slot) { return h[slot]; }
+
+        /** nodeId 对应的 slot，不在布局中返回 -1 */
+        public int getSlotById(int nodeId) {
+            if (idsUnique) return nodeId >= 0 && nodeId < slotById.length ? slotById[nodeId] - 1 : -1;
+            for (int i = 0; i < nodes.length; i++) {
+                if (nodes[i].nodeId == nodeId) return i;
+            }
+            return -1;
+        }
+
+        /** 节点在布局中的 slot，不在布局中返回 -1 */
+        public int getSlot(LogicNode node) {
+            if (idsUnique) {
+                int s = getSlotById(node.nodeId);
+                return s >= 0 && nodes[s] == node ? s : -1;
+            }
+            Integer s = slotOf.get(node);
+            return s == null ? -1 : s;
+        }
+
+        public Rectangle getBounds(int slot) {
+            return new Rectangle(x[slot], y[slot], w[slot], h[slot]);
+        }
+
+        /** 节点矩形（返回副本），不在布局中返回 null */
+        public Rectangle getBounds(LogicNode node) {
+            int s = getSlot(node);
+            return s < 0 ? null : getBounds(s);
+        }
+
+        /** nodeId 对应的节点矩形（返回副本），不在布局中返回 null */
+        public Rectangle getBoundsById(int nodeId) {
+            int s = getSlotById(nodeId);
+            return s < 0 ? null : getBounds(s);
+        }
+
+        /** 所有节点的外接矩形（返回副本） */
+        public Rectangle getExtent() { return new Rectangle(extent); }
+    }
+}
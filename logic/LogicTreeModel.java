@@ -0,0 +1,240 @@
+package logic;
+
+import javax.swing.event.EventListenerList;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+import java.util.*;
+
+/**
+ * 直接以 LogicNode 树作为 JTree 的数据模型
+ * - 不复制节点：JTree 只为展开过的节点建立行状态，未展开的子树不会被访问
+ * - 节点即路径分量，显示文本为 LogicNode.toString（渲染时按需生成）
+ * - 未加载模型时根为占位字符串
+ * - 结构编辑通过 insertNode / removeNode / swapNodes 完成，只对受影响的节点发出精确事件，
+ *   JTree 自行保留其余节点的展开与选中状态；仅在 EDT 上使用
+ * - 节点索引（LogicNodeIndex）在首次按编号或节点求路径时建立，之后随结构编辑维护，求路径只沿父节点上溯
+ */
+public class LogicTreeModel implements TreeModel {
+    private static final String EMPTY_ROOT = "(未加载)";
+
+    private LogicNode root;
+    private final EventListenerList listeners = new EventListenerList();
+    private final LogicNodeIndex nodeIndex = new LogicNodeIndex();
+
+    public LogicTreeModel() {
+        this(null);
+    }
+
+    public LogicTreeModel(LogicNode root) {
+        this.root = root;
+    }
+
+    // 替换整棵树（打开文件、撤销），JTree 的展开状态随之重置
+    public void setRoot(LogicNode root) {
+        this.root = root;
+        reload();
+    }
+
+    public LogicNode getLogicRoot() { return root; }
+
+    @Override
+    public Object getRoot() {
+        return root != null ? root : EMPTY_ROOT;
+    }
+
+    @Override
+    public Object getChild(Object parent, int index) {
+        return ((LogicNode) parent).children.get(index);
+    }
+
+    @Override
+    public int getChildCount(Object parent) {
+        return parent instanceof LogicNode ? ((LogicNode) parent).children.size() : 0;
+    }
+
+    @Override
+    public boolean isLeaf(Object node) {
+        return getChildCount(node) == 0;
+    }
+
+    // 按引用查找（LogicNode 未重写 equals，同文本的兄弟节点互不混淆）
+    @Override
+    public int getIndexOfChild(Object parent, Object child) {
+        if (!(parent instanceof LogicNode)) return -1;
+        java.util.List<LogicNode> children = ((LogicNode) parent).children;
+        for (int i = 0; i < children.size(); i++) {
+            if (children.get(i) == child) return i;
+        }
+        return -1;
+    }
+
+    // 树不可编辑
+    @Override
+    public void valueForPathChanged(TreePath path, Object newValue) {
+    }
+
+    @Override
+    public void addTreeModelListener(TreeModelListener l) {
+        listeners.add(TreeModelListener.class, l);
+    }
+
+    @Override
+    public void removeTreeModelListener(TreeModelListener l) {
+        listeners.remove(TreeModelListener.class, l);
+    }
+
+    // 整棵树结构已变化
+    public void reload() {
+        nodeIndex.invalidate();
+        TreeModelEvent e = new TreeModelEvent(this, new TreePath(getRoot()));
+        for (TreeModelListener l : listeners.getListeners(TreeModelListener.class)) l.treeStructureChanged(e);
+    }
+
+    // 路径末端节点的显示内容已变化（文本、注释），子节点不变
+    public void nodeChanged(TreePath path) {
+        TreePath parentPath = path.getParentPath();
+        TreeModelEvent e;
+        if (parentPath == null) {
+            e = new TreeModelEvent(this, path, null, null);
+        } else {
+            int index = getIndexOfChild(parentPath.getLastPathComponent(), path.getLastPathComponent());
+            if (index < 0) return;
+            e = new TreeModelEvent(this, parentPath, new int[]{index}, new Object[]{path.getLastPathComponent()});
+        }
+        for (TreeModelListener l : listeners.getListeners(TreeModelListener.class)) l.treeNodesChanged(e);
+    }
+
+    /**
+     * 在 parentPath 末端节点的 index 处插入子节点（可为整棵子树）
+     * @return 新节点的路径
+     */
+    public TreePath insertNode(TreePath parentPath, LogicNode child, int index) {
+        LogicNode parent = (LogicNode) parentPath.getLastPathComponent();
+        parent.children.add(index, child);
+        nodeIndex.addSubtree(child, parent);
+        fireInserted(parentPath, new int[]{index}, new Object[]{child});
+        return parentPath.pathByAddingChild(child);
+    }
+
+    /** 追加为 parentPath 末端节点的最后一个子节点，返回新节点的路径 */
+    public TreePath addNode(TreePath parentPath, LogicNode child) {
+        return insertNode(parentPath, child, ((LogicNode) parentPath.getLastPathComponent()).children.size());
+    }
+
+    /**
+     * 从父节点中移除 path 末端节点（连同子树），根节点不能移除
+     * @return 原下标，节点已不在父节点中时返回 -1
+     */
+    public int removeNode(TreePath path) {
+        TreePath parentPath = path.getParentPath();
+        if (parentPath == null) throw new IllegalArgumentException("根节点不能移除");
+        LogicNode parent = (LogicNode) parentPath.getLastPathComponent();
+        Object node = path.getLastPathComponent();
+        int index = getIndexOfChild(parent, node);
+        if (index < 0) return -1;
+        parent.children.remove(index);
+        nodeIndex.removeSubtree((LogicNode) node);
+        fireRemoved(parentPath, new int[]{index}, new Object[]{node});
+        return index;
+    }
+
+    /**
+     * 交换两个节点（连同子树）在各自父节点中的位置；两者都不能是根，且互不包含
+     */
+    public void swapNodes(TreePath a, TreePath b) {
+        TreePath parentA = a.getParentPath(), parentB = b.getParentPath();
+        LogicNode pa = (LogicNode) parentA.getLastPathComponent(), pb = (LogicNode) parentB.getLastPathComponent();
+        LogicNode na = (LogicNode) a.getLastPathComponent(), nb = (LogicNode) b.getLastPathComponent();
+        int ia = getIndexOfChild(pa, na), ib = getIndexOfChild(pb, nb);
+        if (ia < 0 || ib < 0) throw new IllegalArgumentException("节点不在其父节点中");
+        nodeIndex.setParent(na, pb);
+        nodeIndex.setParent(nb, pa);
+        // JTree 的行状态按子节点对象保存，替换需拆成移除 + 插入
+        if (pa == pb) {
+            // 同一父节点下一次性通知，避免中间状态里同一节点出现两次
+            int lo = Math.min(ia, ib), hi = Math.max(ia, ib);
+            pa.children.set(ia, nb);
+            pa.children.set(ib, na);
+            int[] indices = {lo, hi};
+            fireRemoved(parentA, indices, new Object[]{ia < ib ? na : nb, ia < ib ? nb : na});
+            fireInserted(parentA, indices, new Object[]{pa.children.get(lo), pa.children.get(hi)});
+        } else {
+            pa.children.set(ia, nb);
+            fireRemoved(parentA, new int[]{ia}, new Object[]{na});
+            fireInserted(parentA, new int[]{ia}, new Object[]{nb});
+            pb.children.set(ib, na);
+            fireRemoved(parentB, new int[]{ib}, new Object[]{nb});
+            fireInserted(parentB, new int[]{ib}, new Object[]{na});
+        }
+    }
+
+    private void fireInserted(TreePath parentPath, int[] indices, Object[] children) {
+        TreeModelEvent e = new TreeModelEvent(this, parentPath, indices, children);
+        for (TreeModelListener l : listeners.getListeners(TreeModelListener.class)) l.treeNodesInserted(e);
+    }
+
+    private void fireRemoved(TreePath parentPath, int[] indices, Object[] children) {
+        TreeModelEvent e = new TreeModelEvent(this, parentPath, indices, children);
+        for (TreeModelListener l : listeners.getListeners(TreeModelListener.class)) l.treeNodesRemoved(e);
+    }
+
+    /**
+     * 根到指定 nodeId 节点的路径，不存在返回 null
+     * 由索引定位节点后沿父节点上溯；编号重复时按深度优先查找，返回先序中的第一个
+     */
+    public TreePath findPathById(int nodeId) {
+        nodeIndex.ensureBuilt(root);
+        LogicNode node = nodeIndex.get(nodeId);
+        if (node == null) return null;
+        if (node != LogicNodeIndex.AMBIGUOUS) return pathTo(node);
+        TreePath p = findPath(n -> n.nodeId == nodeId);
+        if (p != null) nodeIndex.resolved(nodeId, (LogicNode) p.getLastPathComponent());
+        return p;
+    }
+
+    // 沿索引中的父节点上溯到根
+    private TreePath pathTo(LogicNode node) {
+        ArrayList<LogicNode> up = new ArrayList<>();
+        for (LogicNode n = node; n != null; n = nodeIndex.getParent(n)) up.add(n);
+        Object[] path = new Object[up.size()];
+        for (int i = 0; i < path.length; i++) path[i] = up.get(path.length - 1 - i);
+        return new TreePath(path);
+    }
+
+    /**
+     * 根到指定节点（按引用）的路径，不在树中返回 null；沿父节点上溯，耗时与深度成正比
+     */
+    public TreePath findPath(LogicNode node) {
+        if (node == null) return null;
+        nodeIndex.ensureBuilt(root);
+        return nodeIndex.contains(node) ? pathTo(node) : null;
+    }
+
+    private TreePath findPath(java.util.function.Predicate<LogicNode> match) {
+        if (root == null) return null;
+        // 显式栈：每层记录节点与下一个待访问的子节点下标
+        ArrayList<LogicNode> path = new ArrayList<>();
+        ArrayList<Integer> next = new ArrayList<>();
+        path.add(root);
+        next.add(0);
+        if (match.test(root)) return new TreePath(path.toArray());
+        while (!path.isEmpty()) {
+            int top = path.size() - 1;
+            LogicNode node = path.get(top);
+            int i = next.get(top);
+            if (i >= node.children.size()) {
+                path.remove(top);
+                next.remove(top);
+                continue;
+            }
+            next.set(top, i + 1);
+            LogicNode child = node.children.get(i);
+            path.add(child);
+            next.add(0);
+            if (match.test(child)) return new TreePath(path.toArray());
+        }
+        return null;
+    }
+}
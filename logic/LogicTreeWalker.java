@@ -0,0 +1,99 @@
+package logic;
+
+import java.util.Arrays;
+
+/**
+ * 显式栈的深度优先遍历（先序 enter / 后序 exit），树的深度只受堆大小限制，不会栈溢出
+ * - 栈为按需扩容的数组（节点 + 下一个子节点下标），遍历过程中不为每个节点分配对象
+ * - 通过 ChildAccess 适配不同的树：LogicNode 树（LOGIC）、以 TreePath 表示的 LogicNode 树（PATHS）与 DOM 树（DOM）
+ * - enter 返回 CONTINUE 时遍历子节点，之后调用 exit；返回 SKIP 时跳过子树且不调用 exit；返回 STOP 时立即结束
+ */
+public final class LogicTreeWalker {
+
+    public enum Action { CONTINUE, SKIP, STOP }
+
+    public interface ChildAccess<N> {
+        int childCount(N node);
+        N child(N node, int index);
+    }
+
+    public interface Visitor<N> {
+        /** 先序进入节点；depth 为相对遍历起点的深度（起点为 0） */
+        Action enter(N node, int depth);
+
+        /** 后序离开节点（其子节点均已访问） */
+        default void exit(N node, int depth) {
+        }
+    }
+
+    public static final ChildAccess<LogicNode> LOGIC = new ChildAccess<LogicNode>() {
+        @Override
+        public int childCount(LogicNode node) { return node.children.size(); }
+
+        @Override
+        public LogicNode child(LogicNode node, int index) { return node.children.get(index); }
+    };
+
+    // 子节点的路径在访问时才创建（每个被访问的节点一个 TreePath）
+    public static final ChildAccess<javax.swing.tree.TreePath> PATHS = new ChildAccess<javax.swing.tree.TreePath>() {
+        @Override
+        public int childCount(javax.swing.tree.TreePath path) { return ((LogicNode) path.getLastPathComponent()).children.size(); }
+
+        @Override
+        public javax.swing.tree.TreePath child(javax.swing.tree.TreePath path, int index) {
+            return path.pathByAddingChild(((LogicNode) path.getLastPathComponent()).children.get(index));
+        }
+    };
+
+    public static final ChildAccess<org.w3c.dom.Node> DOM = new ChildAccess<org.w3c.dom.Node>() {
+        @Override
+        public int childCount(org.w3c.dom.Node node) { return node.getChildNodes().getLength(); }
+
+        @Override
+        public org.w3c.dom.Node child(org.w3c.dom.Node node, int index) { return node.getChildNodes().item(index); }
+    };
+
+    private LogicTreeWalker() {
+    }
+
+    /** 遍历 LogicNode 树，被 STOP 提前结束时返回 false */
+    public static boolean walk(LogicNode root, Visitor<LogicNode> visitor) {
+        return walk(root, LOGIC, visitor);
+    }
+
+    /** 遍历任意树，被 STOP 提前结束时返回 false */
+    @SuppressWarnings("unchecked")
+    public static <N> boolean walk(N root, ChildAccess<N> access, Visitor<N> visitor) {
+        if (root == null) return true;
+        Action first = visitor.enter(root, 0);
+        if (first == Action.STOP) return false;
+        if (first == Action.SKIP) return true;
+        Object[] nodes = new Object[32];
+        int[] next = new int[32];
+        int top = 0;
+        nodes[0] = root;
+        next[0] = 0;
+        while (top >= 0) {
+            N node = (N) nodes[top];
+            int i = next[top];
+            if (i >= access.childCount(node)) {
+                nodes[top] = null;
+                top--;
+                visitor.exit(node, top + 1);
+                continue;
+            }
+            next[top] = i + 1;
+            N child = access.child(node, i);
+            Action a = visitor.enter(child, top + 1);
+            if (a == Action.STOP) return false;
+            if (a == Action.SKIP) continue;
+            if (++top == nodes.length) {
+                nodes = Arrays.copyOf(nodes, top * 2);
+                next = Arrays.copyOf(next, top * 2);
+            }
+            nodes[top] = child;
+            next[top] = 0;
+        }
+        return true;
+    }
+}
@@ -4,14 +4,15 @@ import javax.swing.*;
 import java.util.Map;
 
 public class LogicUiUtil {
-    // 递归查找nodeId对应的LogicNode
+    // 查找nodeId对应的LogicNode（先序，找到即停止）
     public static LogicNode findNodeById(LogicNode node, int id) {
-        if (node.nodeId == id) return node;
-        for (LogicNode child : node.children) {
-            LogicNode res = findNodeById(child, id);
-            if (res != null) return res;
-        }
-        return null;
+        LogicNode[] found = new LogicNode[1];
+        LogicTreeWalker.walk(node, (n, depth) -> {
+            if (n.nodeId != id) return LogicTreeWalker.Action.CONTINUE;
+            found[0] = n;
+            return LogicTreeWalker.Action.STOP;
+        });
+        return found[0];
     }
 
     // 更新底部状态栏错误摘要
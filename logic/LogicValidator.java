@@ -1,13 +1,260 @@
 package logic;
 
+/**
+ * 逻辑树校验
+ * - 实例方法 validate 返回不可变的 LogicDiagnostics（每个节点的类型化诊断列表），实例无状态，
+ *   可在任意线程上并发校验多个文档
+ * - 传入 ForkJoinPool 构造的实例并行校验：互不嵌套于量词作用域的子树（如 rules 下的各个 rule）拆为独立任务，
+ *   量词作用域内的大分支也按子节点拆分，每个任务持有作用域副本与各自的收集器，结束时合并诊断与变量使用标记
+ * - 静态的 errorNodeMap / errorDescendantCount 是编辑器当前文档的校验结果（文本形式），
+ *   由 validateAllNodes 与增量校验方法维护，仅在 EDT 上使用
+ */
 public class LogicValidator {
     // 错误节点缓存：nodeId -> 错误描述（用于收集每个节点的自校验错误）
     public static java.util.Map<Integer, String> errorNodeMap = new java.util.HashMap<>();
+    // 子孙错误计数：nodeId -> 子孙（不含自身）中有错误的节点数，只记录大于 0 的节点；与 errorNodeMap 同一遍生成
+    public static java.util.Map<Integer, Integer> errorDescendantCount = new java.util.HashMap<>();
 
-    // 递归校验所有节点，收集所有有错误的节点及类型（每个节点只标记自身错误）
+    // 根节点的子节点（rule）达到该数量且有多个核心时，编辑器的整树校验改用公共 ForkJoinPool 并行
+    private static final int PARALLEL_MIN_RULES = 256;
+    // 并行校验时，工作线程本地队列中积压的任务超过该值就不再拆分
+    private static final int MAX_SURPLUS_TASKS = 3;
+    // 只在该深度以内按子节点拆分任务（拆分在调用栈上嵌套），更深的子树用显式栈顺序校验
+    private static final int MAX_FORK_DEPTH = 64;
+
+    // 为 null 时顺序校验
+    private final java.util.concurrent.ForkJoinPool pool;
+
+    public LogicValidator() {
+        this(null);
+    }
+
+    public LogicValidator(java.util.concurrent.ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // 校验以 root 为根的整个文档
+    public LogicDiagnostics validate(logic.LogicNode root) {
+        if (root == null) return LogicDiagnostics.EMPTY;
+        if (pool != null) {
+            SubtreeTask task = new SubtreeTask(java.util.Collections.singletonList(root), 0, 1, 0, null, new java.util.LinkedHashMap<>());
+            pool.invoke(task);
+            return task.out.toDiagnostics();
+        }
+        Collector out = new Collector();
+        validateAllNodesRec(root, null, new java.util.LinkedHashMap<>(), out);
+        return out.toDiagnostics();
+    }
+
+    // 递归校验所有节点，收集所有有错误的节点及类型（每个节点只标记自身错误），结果写入编辑器的全局缓存
     public static void validateAllNodes(logic.LogicNode node) {
         errorNodeMap.clear();
-        validateAllNodesRec(node, null, new java.util.LinkedHashMap<>());
+        errorDescendantCount.clear();
+        boolean parallel = node != null && node.children.size() >= PARALLEL_MIN_RULES
+            && java.util.concurrent.ForkJoinPool.getCommonPoolParallelism() > 1;
+        LogicValidator validator = parallel ? new LogicValidator(java.util.concurrent.ForkJoinPool.commonPool()) : new LogicValidator();
+        LogicDiagnostics d = validator.validate(node);
+        publish(d.asMap(), d.errorsBelowMap());
+    }
+
+    // 把一批校验结果写入全局缓存
+    private static void publish(java.util.Map<Integer, ? extends java.util.List<LogicDiagnostic>> diags, java.util.Map<Integer, Integer> below) {
+        for (java.util.Map.Entry<Integer, ? extends java.util.List<LogicDiagnostic>> e : diags.entrySet()) {
+            errorNodeMap.put(e.getKey(), LogicDiagnostics.joinMessages(e.getValue()));
+        }
+        errorDescendantCount.putAll(below);
+    }
+
+    // 一次校验过程中的可变收集器（每次校验各自创建，不跨线程共享）
+    private static final class Collector {
+        final java.util.Map<Integer, java.util.List<LogicDiagnostic>> diags = new java.util.HashMap<>();
+        final java.util.Map<Integer, Integer> below = new java.util.HashMap<>();
+
+        void add(logic.LogicNode node, LogicDiagnostic d) {
+            diags.computeIfAbsent(node.nodeId, k -> new java.util.ArrayList<>(2)).add(d);
+        }
+
+        boolean has(logic.LogicNode node) { return diags.containsKey(node.nodeId); }
+
+        // 合并另一任务的结果（节点互不相交）
+        void merge(Collector other) {
+            for (java.util.Map.Entry<Integer, java.util.List<LogicDiagnostic>> e : other.diags.entrySet()) {
+                diags.merge(e.getKey(), e.getValue(), (a, b) -> { a.addAll(b); return a; });
+            }
+            below.putAll(other.below);
+        }
+
+        LogicDiagnostics toDiagnostics() { return new LogicDiagnostics(diags, below); }
+    }
+
+    /**
+     * 并行校验任务：校验同一父节点下 nodes[lo, hi) 这些兄弟子树
+     * - definedVars 为本任务独占的作用域副本，结束时其中被标记为已使用的变量由父任务合并回去
+     * - 兄弟区间按二分拆出子任务；子节点较多的单个节点在进入后把其子节点区间作为子任务；
+     *   工作线程积压任务较多或超过 MAX_FORK_DEPTH 时退回顺序遍历
+     */
+    private static final class SubtreeTask extends java.util.concurrent.RecursiveTask<Integer> {
+        final java.util.List<logic.LogicNode> nodes;
+        final int lo, hi;
+        // nodes 在树中的深度
+        final int depth;
+        final logic.LogicNode.NodeType parentType;
+        final java.util.Map<String, Boolean> definedVars;
+        final Collector out = new Collector();
+
+        SubtreeTask(java.util.List<logic.LogicNode> nodes, int lo, int hi, int depth, logic.LogicNode.NodeType parentType, java.util.Map<String, Boolean> definedVars) {
+            this.nodes = nodes;
+            this.lo = lo;
+            this.hi = hi;
+            this.depth = depth;
+            this.parentType = parentType;
+            this.definedVars = definedVars;
+        }
+
+        @Override
+        protected Integer compute() {
+            java.util.List<SubtreeTask> forked = new java.util.ArrayList<>();
+            int to = hi;
+            while (to - lo > 1 && getSurplusQueuedTaskCount() <= MAX_SURPLUS_TASKS) {
+                int mid = (lo + to) >>> 1;
+                SubtreeTask t = new SubtreeTask(nodes, mid, to, depth, parentType, new java.util.LinkedHashMap<>(definedVars));
+                t.fork();
+                forked.add(t);
+                to = mid;
+            }
+            int count = 0;
+            for (int i = lo; i < to; i++) count += validateNode(nodes.get(i));
+            for (int i = forked.size() - 1; i >= 0; i--) count += mergeChild(forked.get(i), forked.get(i).join());
+            return count;
+        }
+
+        private int validateNode(logic.LogicNode node) {
+            if (node.children.size() < 2 || depth >= MAX_FORK_DEPTH || getSurplusQueuedTaskCount() > MAX_SURPLUS_TASKS) {
+                return validateAllNodesRec(node, parentType, definedVars, out);
+            }
+            Scope scope = enterNode(node, parentType, definedVars, out);
+            // 子节点区间在当前线程执行，由其继续拆分出子任务
+            SubtreeTask children = new SubtreeTask(node.children, 0, node.children.size(), depth + 1, node.type, new java.util.LinkedHashMap<>(definedVars));
+            int below = mergeChild(children, children.invoke());
+            if (below > 0) out.below.put(node.nodeId, below);
+            exitNode(node, scope, definedVars, out);
+            return below + (out.has(node) ? 1 : 0);
+        }
+
+        private int mergeChild(SubtreeTask t, int count) {
+            out.merge(t.out);
+            // 子任务中被使用的外层变量在本作用域中同样标记为已使用
+            for (java.util.Map.Entry<String, Boolean> e : t.definedVars.entrySet()) {
+                if (e.getValue() == Boolean.TRUE) definedVars.replace(e.getKey(), Boolean.TRUE);
+            }
+            return count;
+        }
+    }
+
+    // 节点的子孙中是否存在错误节点（O(1)，供树渲染折叠节点时使用）
+    public static boolean hasErrorBelow(logic.LogicNode node) {
+        return errorDescendantCount.containsKey(node.nodeId);
+    }
+
+    /**
+     * 增量校验：path 为根到变化节点的路径（变化指节点内容或其子节点列表改变，且已反映在树中），
+     * 结果与对整棵树调用 validateAllNodes 一致：
+     * - 变量只在量词节点定义、作用域为其子树，因此重新校验变化节点最外层的量词祖先（没有则为变化节点自身）的整棵子树；
+     * - 该子树根即变化节点时，其父节点的结构（子节点数）另行重新校验；
+     * - 子孙错误计数按该子树错误数的差值沿祖先链更新。
+     */
+    public static void validateChanged(javax.swing.tree.TreePath path) {
+        Object[] nodes = path.getPath();
+        int last = nodes.length - 1;
+        int scope = last;
+        for (int i = 0; i < last; i++) {
+            if (isBinder((logic.LogicNode) nodes[i])) { scope = i; break; }
+        }
+        logic.LogicNode scopeRoot = (logic.LogicNode) nodes[scope];
+        logic.LogicNode.NodeType scopeParentType = scope == 0 ? null : ((logic.LogicNode) nodes[scope - 1]).type;
+        int before = subtreeErrorCount(scopeRoot);
+        clearSubtree(scopeRoot);
+        Collector out = new Collector();
+        int after = validateAllNodesRec(scopeRoot, scopeParentType, new java.util.LinkedHashMap<>(), out);
+        publish(out.diags, out.below);
+        adjustDescendantCounts(nodes, scope, after - before);
+        if (scope == last && last > 0) {
+            // 父节点不在任何量词作用域内：重新计算其结构错误与未定义变量的使用
+            logic.LogicNode parent = (logic.LogicNode) nodes[last - 1];
+            logic.LogicNode.NodeType grandType = last == 1 ? null : ((logic.LogicNode) nodes[last - 2]).type;
+            boolean had = errorNodeMap.containsKey(parent.nodeId);
+            java.util.List<LogicDiagnostic> list = unscopedDiagnostics(parent, grandType);
+            String msg = list.isEmpty() ? null : LogicDiagnostics.joinMessages(list);
+            if (msg == null) errorNodeMap.remove(parent.nodeId);
+            else errorNodeMap.put(parent.nodeId, msg);
+            adjustDescendantCounts(nodes, last - 1, (msg != null ? 1 : 0) - (had ? 1 : 0));
+        }
+    }
+
+    /**
+     * 增量校验：oldPath 末端节点（连同子树）已从该位置移除（删除，或移动前的原位置）。
+     * 撤销其错误记录后按父节点变化重新校验；移动时随后对新位置调用 validateChanged
+     */
+    public static void validateRemoved(javax.swing.tree.TreePath oldPath) {
+        forgetSubtree(oldPath);
+        validateChanged(oldPath.getParentPath());
+    }
+
+    /**
+     * 撤销 oldPath 末端子树的错误记录，并从原祖先的子孙错误计数中扣除（不做校验）。
+     * 用于交换等同时移走多棵子树的操作：先对各原位置调用本方法，再对各新位置调用 validateChanged
+     */
+    public static void forgetSubtree(javax.swing.tree.TreePath oldPath) {
+        Object[] nodes = oldPath.getPath();
+        logic.LogicNode removed = (logic.LogicNode) nodes[nodes.length - 1];
+        adjustDescendantCounts(nodes, nodes.length - 1, -subtreeErrorCount(removed));
+        clearSubtree(removed);
+    }
+
+    private static boolean isBinder(logic.LogicNode node) {
+        return node.type == logic.LogicNode.NodeType.FORALL || node.type == logic.LogicNode.NodeType.EXISTS;
+    }
+
+    // 以 node 为根的子树中有错误的节点数（依据当前记录）
+    private static int subtreeErrorCount(logic.LogicNode node) {
+        return errorDescendantCount.getOrDefault(node.nodeId, 0) + (errorNodeMap.containsKey(node.nodeId) ? 1 : 0);
+    }
+
+    // 撤销子树内全部节点的错误记录与子孙错误计数（不改动其祖先的计数）
+    private static void clearSubtree(logic.LogicNode root) {
+        java.util.ArrayDeque<logic.LogicNode> stack = new java.util.ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            logic.LogicNode n = stack.pop();
+            errorNodeMap.remove(n.nodeId);
+            errorDescendantCount.remove(n.nodeId);
+            for (logic.LogicNode c : n.children) stack.push(c);
+        }
+    }
+
+    // nodes[0..end) 的子孙错误计数加 delta
+    private static void adjustDescendantCounts(Object[] nodes, int end, int delta) {
+        if (delta == 0) return;
+        for (int i = 0; i < end; i++) {
+            int id = ((logic.LogicNode) nodes[i]).nodeId;
+            int count = errorDescendantCount.getOrDefault(id, 0) + delta;
+            if (count > 0) errorDescendantCount.put(id, count);
+            else errorDescendantCount.remove(id);
+        }
+    }
+
+    // 不在任何量词作用域内的（非量词）节点自身的错误：结构错误，以及参数中使用的变量均未定义
+    private static java.util.List<LogicDiagnostic> unscopedDiagnostics(logic.LogicNode node, logic.LogicNode.NodeType parentType) {
+        java.util.List<LogicDiagnostic> list = new java.util.ArrayList<>(2);
+        LogicDiagnostic self = validateNodeSelf(node, parentType);
+        if (self != null) list.add(self);
+        java.util.List<java.util.Map<String,String>> uses = new java.util.ArrayList<>(node.paramList);
+        uses.addAll(node.filterParamList);
+        for (java.util.Map<String,String> p : uses) {
+            String used = p.get("var");
+            if (used != null && !used.isEmpty()) list.add(new LogicDiagnostic(LogicDiagnostic.Code.VAR_UNDEFINED, used));
+        }
+        return list;
     }
     /**
      * 递归校验所有节点，增加变量作用域检查：
@@ -17,148 +264,175 @@ public class LogicValidator {
      * @param node 当前节点
      * @param parentType 父节点类型（用于结构校验）
      * @param definedVars 当前祖先链已定义的变量集合
+     * @param out 诊断收集器
+     * @return 以 node 为根的子树中有错误的节点数（含自身）
      */
-    public static void validateAllNodesRec(logic.LogicNode node, logic.LogicNode.NodeType parentType, java.util.Map<String, Boolean> definedVars) {
-        // 先做原有的节点自身结构校验
-        String err = validateNodeSelf(node, parentType);
-        if (err != null) {
-            errorNodeMap.put(node.nodeId, err);
+    private static int validateAllNodesRec(logic.LogicNode node, logic.LogicNode.NodeType parentType, java.util.Map<String, Boolean> definedVars, Collector out) {
+        ScopeWalker walker = new ScopeWalker(parentType, definedVars, out);
+        LogicTreeWalker.walk(node, walker);
+        return walker.total;
+    }
+
+    // 显式栈遍历的校验访问者：各层保存节点、其压入的定义与已累计的子孙错误数
+    private static final class ScopeWalker implements LogicTreeWalker.Visitor<logic.LogicNode> {
+        private final logic.LogicNode.NodeType rootParentType;
+        private final java.util.Map<String, Boolean> definedVars;
+        private final Collector out;
+        private final java.util.ArrayList<logic.LogicNode> nodes = new java.util.ArrayList<>();
+        private final java.util.ArrayList<Scope> scopes = new java.util.ArrayList<>();
+        private int[] below = new int[32];
+        int total;
+
+        ScopeWalker(logic.LogicNode.NodeType rootParentType, java.util.Map<String, Boolean> definedVars, Collector out) {
+            this.rootParentType = rootParentType;
+            this.definedVars = definedVars;
+            this.out = out;
         }
 
+        @Override
+        public LogicTreeWalker.Action enter(logic.LogicNode node, int depth) {
+            logic.LogicNode.NodeType parentType = depth == 0 ? rootParentType : nodes.get(depth - 1).type;
+            Scope scope = enterNode(node, parentType, definedVars, out);
+            if (depth == nodes.size()) {
+                nodes.add(node);
+                scopes.add(scope);
+            } else {
+                nodes.set(depth, node);
+                scopes.set(depth, scope);
+            }
+            if (depth == below.length) below = java.util.Arrays.copyOf(below, depth * 2);
+            below[depth] = 0;
+            return LogicTreeWalker.Action.CONTINUE;
+        }
+
+        @Override
+        public void exit(logic.LogicNode node, int depth) {
+            int b = below[depth];
+            if (b > 0) out.below.put(node.nodeId, b);
+            exitNode(node, scopes.get(depth), definedVars, out);
+            scopes.set(depth, null);
+            int count = b + (out.has(node) ? 1 : 0);
+            if (depth > 0) below[depth - 1] += count;
+            else total = count;
+        }
+    }
+
+    // 量词节点压入的变量定义，回溯时用于检查使用情况并恢复外层定义
+    private static final class Scope {
+        final String name;
+        final boolean hadPrev;
+        final Boolean prev;
+
+        Scope(String name, boolean hadPrev, Boolean prev) {
+            this.name = name;
+            this.hadPrev = hadPrev;
+            this.prev = prev;
+        }
+    }
+
+    // 进入节点：自身结构校验、量词的变量定义与参数中的变量使用检查；返回本节点压入的定义（没有则为 null）
+    private static Scope enterNode(logic.LogicNode node, logic.LogicNode.NodeType parentType, java.util.Map<String, Boolean> definedVars, Collector out) {
+        // 先做原有的节点自身结构校验
+        LogicDiagnostic err = validateNodeSelf(node, parentType);
+        if (err != null) out.add(node, err);
+
         // 变量作用域与使用检查
         // 1) 如果是量词节点，检查当前定义的变量是否已在祖先中存在（重复定义为错误）
-        boolean pushedVar = false;
-        String pushedName = null;
-        Boolean pushedPrev = null;
-        boolean hadPrev = false;
-        if (node.type == logic.LogicNode.NodeType.FORALL || node.type == logic.LogicNode.NodeType.EXISTS) {
+        Scope scope = null;
+        if (isBinder(node)) {
             String var = node.params.get("var");
             if (var != null && !var.isEmpty()) {
-                hadPrev = definedVars.containsKey(var);
-                pushedPrev = definedVars.get(var); // may be null
-                if (hadPrev) {
-                    // 追加或设置错误信息
-                    String prev = errorNodeMap.get(node.nodeId);
-                    String msg = "变量重复定义: " + var;
-                    if (prev == null) errorNodeMap.put(node.nodeId, msg);
-                    else errorNodeMap.put(node.nodeId, prev + "; " + msg);
-                }
-                // 以当前定义覆盖（标记为未使用），递归后恢复原值或移除
+                boolean hadPrev = definedVars.containsKey(var);
+                if (hadPrev) out.add(node, new LogicDiagnostic(LogicDiagnostic.Code.VAR_REDEFINED, var));
+                scope = new Scope(var, hadPrev, definedVars.get(var));
+                // 以当前定义覆盖（标记为未使用），回溯时恢复原值或移除
                 definedVars.put(var, Boolean.FALSE);
-                pushedVar = true;
-                pushedName = var;
             } else {
                 // 未能取到 var 参数，已在 validateNodeSelf 中报告结构错误
             }
         }
 
         // 2) 对当前节点中使用的变量（paramList / filterParamList）进行未定义检查
-        // 检查 paramList
-        if (node.paramList != null) {
-            for (java.util.Map<String,String> p : node.paramList) {
-                String used = p.get("var");
-                if (used != null && !used.isEmpty()) {
-                    if (!definedVars.containsKey(used)) {
-                        String prev = errorNodeMap.get(node.nodeId);
-                        String msg = "使用未定义的变量: " + used;
-                        if (prev == null) errorNodeMap.put(node.nodeId, msg);
-                        else errorNodeMap.put(node.nodeId, prev + "; " + msg);
-                    } else {
-                        // 标记该变量在作用域中已被使用
-                        definedVars.put(used, Boolean.TRUE);
-                    }
-                }
-            }
-        }
-        // 检查 filterParamList
-        if (node.filterParamList != null) {
-            for (java.util.Map<String,String> p : node.filterParamList) {
-                String used = p.get("var");
-                if (used != null && !used.isEmpty()) {
-                    if (!definedVars.containsKey(used)) {
-                        String prev = errorNodeMap.get(node.nodeId);
-                        String msg = "使用未定义的变量: " + used;
-                        if (prev == null) errorNodeMap.put(node.nodeId, msg);
-                        else errorNodeMap.put(node.nodeId, prev + "; " + msg);
-                    } else {
-                        definedVars.put(used, Boolean.TRUE);
-                    }
-                }
-            }
-        }
+        checkUses(node, node.paramList, definedVars, out);
+        checkUses(node, node.filterParamList, definedVars, out);
+        return scope;
+    }
 
-        // 递归子节点，使用就地更新的 definedVars
-        for (logic.LogicNode child : node.children) {
-            validateAllNodesRec(child, node.type, definedVars);
+    // 离开节点（子节点均已校验）：如果在本节点插入了变量定义，则检查是否被使用并恢复/移除
+    private static void exitNode(logic.LogicNode node, Scope scope, java.util.Map<String, Boolean> definedVars, Collector out) {
+        if (scope == null) return;
+        Boolean cur = definedVars.get(scope.name);
+        if (cur == null || cur == Boolean.FALSE) {
+            // 当前定义未被使用
+            out.add(node, new LogicDiagnostic(LogicDiagnostic.Code.VAR_UNUSED, scope.name));
         }
+        if (scope.hadPrev) {
+            // 恢复之前的值
+            definedVars.put(scope.name, scope.prev);
+        } else {
+            definedVars.remove(scope.name);
+        }
+    }
 
-        // 回溯：如果在本节点插入了变量定义，则检查是否被使用并恢复/移除
-        if (pushedVar && pushedName != null) {
-            Boolean cur = definedVars.get(pushedName);
-            if (cur == null || cur == Boolean.FALSE) {
-                // 当前定义未被使用
-                String prev = errorNodeMap.get(node.nodeId);
-                String msg = "定义的变量未被使用: " + pushedName;
-                if (prev == null) errorNodeMap.put(node.nodeId, msg);
-                else errorNodeMap.put(node.nodeId, prev + "; " + msg);
-            }
-            if (hadPrev) {
-                // 恢复之前的值
-                definedVars.put(pushedName, pushedPrev);
-            } else {
-                definedVars.remove(pushedName);
-            }
+    // 参数中使用的变量必须已定义；已定义的标记为已被使用
+    private static void checkUses(logic.LogicNode node, java.util.List<java.util.Map<String,String>> params, java.util.Map<String, Boolean> definedVars, Collector out) {
+        if (params == null) return;
+        for (java.util.Map<String,String> p : params) {
+            String used = p.get("var");
+            if (used == null || used.isEmpty()) continue;
+            if (!definedVars.containsKey(used)) out.add(node, new LogicDiagnostic(LogicDiagnostic.Code.VAR_UNDEFINED, used));
+            else definedVars.put(used, Boolean.TRUE);
         }
     }
 
     // 只校验当前节点本身的错误（不递归子节点）
-    static String validateNodeSelf(logic.LogicNode node, logic.LogicNode.NodeType parentType) {
+    static LogicDiagnostic validateNodeSelf(logic.LogicNode node, logic.LogicNode.NodeType parentType) {
         // 根节点要求为 RULES 类型（包含若干 rule）
         if (parentType == null && node.type != logic.LogicNode.NodeType.RULES) {
-            return "根节点只能是RULES类型";
+            return new LogicDiagnostic(LogicDiagnostic.Code.ROOT_NOT_RULES);
         }
         switch (node.type) {
             case RULES:
                 // rules 必须为根节点
-                if (parentType != null) return "rules 节点必须位于根位置";
+                if (parentType != null) return new LogicDiagnostic(LogicDiagnostic.Code.RULES_NOT_ROOT);
                 // 可包含多个 rule 子节点，至少允许 0 个以便编辑空规则集合
                 break;
             case RULE:
                 // rule 的父节点必须是 rules
-                if (parentType != logic.LogicNode.NodeType.RULES) return "rule 的父节点必须是 rules";
+                if (parentType != logic.LogicNode.NodeType.RULES) return new LogicDiagnostic(LogicDiagnostic.Code.RULE_PARENT);
                 break;
             case FORALL: case EXISTS:
                 if (!node.params.containsKey("var") || !node.params.containsKey("in"))
-                    return "量词节点缺少 var 或 in 参数";
-                if (node.children.size() != 1) return "量词节点必须有且仅有一个子公式";
+                    return new LogicDiagnostic(LogicDiagnostic.Code.QUANTIFIER_PARAMS);
+                if (node.children.size() != 1) return new LogicDiagnostic(LogicDiagnostic.Code.QUANTIFIER_CHILDREN);
                 // filter/filterParamList可为空或不为空，无需强制校验内容
                 break;
             case BFUNC:
-                if (!node.params.containsKey("name")) return "bfunc 缺少 name 参数";
-                if (!node.children.isEmpty()) return "bfunc不能有子公式";
+                if (!node.params.containsKey("name")) return new LogicDiagnostic(LogicDiagnostic.Code.BFUNC_NAME);
+                if (!node.children.isEmpty()) return new LogicDiagnostic(LogicDiagnostic.Code.BFUNC_CHILDREN);
                 break;
             case IMPLIES:
-                if (node.children.size()!=2) return node.type.name().toLowerCase()+"节点必须有2个子公式";
+                if (node.children.size()!=2) return new LogicDiagnostic(LogicDiagnostic.Code.IMPLIES_CHILDREN, node.type.name().toLowerCase());
                 break;
             case NOT:
-                if (node.children.size()!=1) return "not 节点必须有1个子公式";
+                if (node.children.size()!=1) return new LogicDiagnostic(LogicDiagnostic.Code.NOT_CHILDREN);
                 break;
             case FORMULA:
                 // formula 的父节点必须是 rule
-                if (parentType != logic.LogicNode.NodeType.RULE) return "formula 的父节点必须是 rule";
-                if (node.children.size() > 1) return "FORMULA类型的子节点不能超过1个";
+                if (parentType != logic.LogicNode.NodeType.RULE) return new LogicDiagnostic(LogicDiagnostic.Code.FORMULA_PARENT);
+                if (node.children.size() > 1) return new LogicDiagnostic(LogicDiagnostic.Code.FORMULA_CHILDREN);
                 break;
             case AND: case OR:
-                if (node.children.size() < 1) return node.type.name().toLowerCase()+"节点必须有子公式";
+                if (node.children.size() < 1) return new LogicDiagnostic(LogicDiagnostic.Code.JUNCTION_CHILDREN, node.type.name().toLowerCase());
                 break;
             default:
                 // unknown 节点只能出现在 rule 或 rules 之下
                 if (parentType != logic.LogicNode.NodeType.RULE && parentType != logic.LogicNode.NodeType.RULES)
-                    return "unknown 节点的父节点必须是 rule 或 rules";
+                    return new LogicDiagnostic(LogicDiagnostic.Code.UNKNOWN_PARENT);
                 break;
         }
         if (node.type != logic.LogicNode.NodeType.BFUNC && node.paramList != null && !node.paramList.isEmpty()) {
-            return node.type.name().toLowerCase() + "类型不允许有参数列表";
+            return new LogicDiagnostic(LogicDiagnostic.Code.PARAM_LIST_NOT_ALLOWED, node.type.name().toLowerCase());
         }
         return null;
     }
@@ -0,0 +1,313 @@
+package logic;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * 监视模式的校验（LogicBatchValidator -w），常驻运行直到进程被终止
+ * - 启动时并行解析、校验全部文件，之后用 WatchService 监视给定目录（含子目录，新建的子目录自动加入）与单独给出的文件
+ * - 每个文件的 LogicNode 树、校验结果与已报告的诊断常驻内存；文件变化时只重新解析、校验变化的文件。
+ *   收到事件的文件总是重新校验（修改时间精度可能只有 1 秒，同一秒内等长的保存不能凭时间与大小识别），
+ *   只有事件溢出后的全量比对才按修改时间与大小跳过未变化的文件
+ * - 新建后随即删除或改名的目录（编辑器临时目录、git checkout）在遍历失败时按删除处理
+ * - 输出 JSON lines 增量：event 为 add（新出现）或 remove（已消失），其余字段与批量报告相同，file 为绝对路径；
+ *   启动时的全部诊断以 add 输出。诊断按 path + code + message 识别，编辑只使 nodeId 变化时不输出
+ * - 无法解析的文件以带 event 的 error 行表示，修复后输出对应的 remove
+ */
+public class LogicWatchValidator {
+    // 收到事件后等到该时长内没有新事件再处理（编辑器保存一次常产生多个事件）
+    private static final long SETTLE_MS = 30;
+
+    // 一条已报告的诊断或解析错误
+    private static final class Item {
+        final int nodeId;
+        final String path;
+        final LogicDiagnostic diagnostic;
+        final String error;
+
+        Item(int nodeId, String path, LogicDiagnostic diagnostic, String error) {
+            this.nodeId = nodeId;
+            this.path = path;
+            this.diagnostic = diagnostic;
+            this.error = error;
+        }
+
+        String key() {
+            if (error != null) return "\u0000" + error;
+            return path + '\u0000' + diagnostic.getCode() + '\u0000' + diagnostic.getMessage();
+        }
+    }
+
+    // 单个文件的缓存
+    private static final class Entry {
+        final LogicBatchValidator.FileResult result;
+        final long modified;
+        final long size;
+        final List<Item> items;
+
+        Entry(LogicBatchValidator.FileResult result, long modified, long size, List<Item> items) {
+            this.result = result;
+            this.modified = modified;
+            this.size = size;
+            this.items = items;
+        }
+    }
+
+    private final int threads;
+    private final Writer out;
+    private final Map<Path, Entry> cache = new HashMap<>();
+    private final Map<WatchKey, Path> keys = new HashMap<>();
+    // 递归监视的目录与单独监视的文件（均为绝对路径）
+    private final List<Path> roots = new ArrayList<>();
+    private final Set<Path> files = new HashSet<>();
+    private WatchService watcher;
+    private ForkJoinPool pool;
+    private int itemCount = 0;
+
+    public LogicWatchValidator(int threads, Writer out) {
+        this.threads = threads;
+        this.out = out;
+    }
+
+    /**
+     * 开始监视 inputs 中的目录与文件；只在参数错误或线程被中断时返回
+     */
+    public int run(List<String> inputs) throws IOException {
+        watcher = FileSystems.getDefault().newWatchService();
+        pool = new ForkJoinPool(threads);
+        try {
+            Set<Path> initial = new TreeSet<>();
+            for (String in : inputs) {
+                Path p = Paths.get(in).toAbsolutePath().normalize();
+                if (Files.isDirectory(p)) {
+                    roots.add(p);
+                    registerTree(p);
+                    collectXml(p, initial);
+                } else if (Files.isRegularFile(p)) {
+                    files.add(p);
+                    register(p.getParent());
+                    initial.add(p);
+                } else {
+                    System.err.println("文件不存在: " + in);
+                    return 2;
+                }
+            }
+            long start = System.nanoTime();
+            update(initial, Collections.emptySet());
+            System.err.println("监视中：" + cache.size() + " 个文件（" + (System.nanoTime() - start) / 1_000_000 + " ms），共 "
+                + itemCount + " 条错误");
+
+            while (true) {
+                Set<Path> changed = new TreeSet<>();
+                Set<Path> rescanned = new TreeSet<>();
+                boolean rescan = false;
+                try {
+                    WatchKey key = watcher.take();
+                    while (key != null) {
+                        rescan |= drain(key, changed);
+                        key = watcher.poll(SETTLE_MS, TimeUnit.MILLISECONDS);
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return 0;
+                }
+                if (rescan) {
+                    // 事件溢出：与磁盘全量比对（未变化的文件仍按修改时间与大小跳过）
+                    rescanned.addAll(cache.keySet());
+                    for (Path r : roots) collectXml(r, rescanned);
+                    rescanned.addAll(files);
+                    rescanned.removeAll(changed);
+                }
+                if (changed.isEmpty() && rescanned.isEmpty()) continue;
+                long t = System.nanoTime();
+                int[] delta = update(changed, rescanned);
+                if (delta[0] == 0 && delta[1] == 0 && delta[2] == 0) continue;
+                System.err.println(delta[0] + " 个文件已重新校验（" + (System.nanoTime() - t) / 1_000_000 + " ms）：+"
+                    + delta[1] + " -" + delta[2] + "，共 " + itemCount + " 条错误");
+            }
+        } finally {
+            pool.shutdown();
+            watcher.close();
+        }
+    }
+
+    // 处理一个 WatchKey 上的事件，把相关文件加入 changed；事件溢出时返回 true
+    private boolean drain(WatchKey key, Set<Path> changed) throws IOException {
+        Path dir = keys.get(key);
+        boolean overflow = false;
+        for (WatchEvent<?> ev : key.pollEvents()) {
+            if (ev.kind() == OVERFLOW || dir == null) {
+                overflow = true;
+                continue;
+            }
+            Path p = dir.resolve((Path) ev.context());
+            boolean gone = ev.kind() == ENTRY_DELETE;
+            if (ev.kind() == ENTRY_CREATE && underRoot(p) && Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS)) {
+                // 遍历前或遍历中目录已消失：按删除处理
+                gone = !(registerTree(p) && collectXml(p, changed));
+            } else if (isWatched(p)) {
+                changed.add(p);
+            }
+            // 目录被删除或改名时，其下的文件不会各自产生事件
+            if (gone) {
+                for (Path f : cache.keySet()) {
+                    if (f.startsWith(p) && !f.equals(p)) changed.add(f);
+                }
+            }
+        }
+        if (!key.reset()) keys.remove(key);
+        return overflow;
+    }
+
+    /**
+     * 重新解析、校验 changed 中收到事件的文件与 rescanned 中修改时间或大小变化的文件（不存在的文件移出缓存），输出诊断增减
+     * @return {重新校验的文件数, 新增条数, 消失条数}
+     */
+    private int[] update(Set<Path> changed, Set<Path> rescanned) throws IOException {
+        Set<Path> paths = new TreeSet<>(changed);
+        paths.addAll(rescanned);
+        List<Path> checked = new ArrayList<>();
+        List<long[]> attrs = new ArrayList<>();
+        List<ForkJoinTask<LogicBatchValidator.FileResult>> tasks = new ArrayList<>();
+        int added = 0, removed = 0;
+        for (Path p : paths) {
+            BasicFileAttributes a;
+            try {
+                a = Files.readAttributes(p, BasicFileAttributes.class);
+            } catch (IOException ex) {
+                a = null;
+            }
+            if (a == null || !a.isRegularFile()) {
+                Entry old = cache.remove(p);
+                if (old != null) removed += emit(p, old.items, Collections.emptyList())[1];
+                continue;
+            }
+            long modified = a.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+            Entry old = cache.get(p);
+            if (old != null && !changed.contains(p) && old.modified == modified && old.size == a.size()) continue;
+            checked.add(p);
+            attrs.add(new long[]{modified, a.size()});
+            tasks.add(pool.submit(() -> LogicBatchValidator.check(p, true)));
+        }
+        for (int i = 0; i < checked.size(); i++) {
+            Path p = checked.get(i);
+            LogicBatchValidator.FileResult r = tasks.get(i).join();
+            List<Item> items = items(r);
+            Entry old = cache.put(p, new Entry(r, attrs.get(i)[0], attrs.get(i)[1], items));
+            int[] d = emit(p, old == null ? Collections.emptyList() : old.items, items);
+            added += d[0];
+            removed += d[1];
+        }
+        out.flush();
+        return new int[]{checked.size(), added, removed};
+    }
+
+    // 文件的全部报告项，按 nodeId 顺序
+    private static List<Item> items(LogicBatchValidator.FileResult r) {
+        if (r.error != null) return Collections.singletonList(new Item(0, null, null, r.error));
+        if (r.diagnostics.isEmpty()) return Collections.emptyList();
+        Map<Integer, String> paths = LogicBatchValidator.nodePaths(r.root, r.diagnostics.nodeIds());
+        List<Integer> ids = new ArrayList<>(r.diagnostics.nodeIds());
+        Collections.sort(ids);
+        List<Item> out = new ArrayList<>();
+        for (int id : ids) {
+            for (LogicDiagnostic d : r.diagnostics.get(id)) out.add(new Item(id, paths.get(id), d, null));
+        }
+        return out;
+    }
+
+    // 输出 before -> after 的增减（先 remove 后 add），返回 {新增条数, 消失条数}
+    private int[] emit(Path file, List<Item> before, List<Item> after) throws IOException {
+        String f = file.toString();
+        int[] n = new int[2];
+        IOException[] failure = {null};
+        forEachDelta(before, after, (item, add) -> {
+            if (failure[0] != null) return;
+            try {
+                String event = add ? "add" : "remove";
+                if (item.error != null) LogicBatchValidator.writeError(event, f, item.error, out);
+                else LogicBatchValidator.writeDiagnostic(event, f, item.nodeId, item.path, item.diagnostic, out);
+                n[add ? 0 : 1]++;
+            } catch (IOException ex) {
+                failure[0] = ex;
+            }
+        });
+        if (failure[0] != null) throw failure[0];
+        itemCount += after.size() - before.size();
+        return n;
+    }
+
+    private interface DeltaConsumer {
+        void accept(Item item, boolean add);
+    }
+
+    // 按多重集比较两组报告项：先给出只在 before 中的项，再给出只在 after 中的项
+    private static void forEachDelta(List<Item> before, List<Item> after, DeltaConsumer c) {
+        Map<String, Integer> inAfter = new HashMap<>();
+        for (Item i : after) inAfter.merge(i.key(), 1, Integer::sum);
+        Map<String, Integer> inBefore = new HashMap<>();
+        for (Item i : before) {
+            String k = i.key();
+            inBefore.merge(k, 1, Integer::sum);
+            if (inAfter.merge(k, -1, Integer::sum) < 0) c.accept(i, false);
+        }
+        for (Item i : after) {
+            if (inBefore.merge(i.key(), -1, Integer::sum) < 0) c.accept(i, true);
+        }
+    }
+
+    private boolean underRoot(Path p) {
+        for (Path r : roots) {
+            if (p.startsWith(r)) return true;
+        }
+        return false;
+    }
+
+    private boolean isWatched(Path p) {
+        if (files.contains(p)) return true;
+        return underRoot(p) && p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".xml");
+    }
+
+    private void register(Path dir) throws IOException {
+        keys.put(dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+    }
+
+    // 监视 dir 及其子目录；目录在遍历前或遍历中消失时返回 false（已登记的监视随之失效）
+    private boolean registerTree(Path dir) throws IOException {
+        try (Stream<Path> s = Files.walk(dir)) {
+            for (Path d : (Iterable<Path>) s.filter(Files::isDirectory)::iterator) register(d);
+            return true;
+        } catch (NoSuchFileException | NotDirectoryException ex) {
+            return false;
+        } catch (UncheckedIOException ex) {
+            if (ex.getCause() instanceof NoSuchFileException || ex.getCause() instanceof NotDirectoryException) return false;
+            throw ex.getCause();
+        }
+    }
+
+    // 收集 dir 下的 xml 文件；目录在遍历前或遍历中消失时返回 false（out 只加入已找到的文件，之后按不存在处理）
+    private static boolean collectXml(Path dir, Set<Path> out) throws IOException {
+        List<Path> list = new ArrayList<>();
+        try {
+            LogicBatchValidator.collectXmlFiles(dir, list);
+            return true;
+        } catch (NoSuchFileException | NotDirectoryException ex) {
+            return false;
+        } catch (UncheckedIOException ex) {
+            if (ex.getCause() instanceof NoSuchFileException || ex.getCause() instanceof NotDirectoryException) return false;
+            throw ex.getCause();
+        } finally {
+            out.addAll(list);
+        }
+    }
+}
@@ -1,11 +1,300 @@
 package logic;
 
 import org.w3c.dom.*;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.io.*;
 import java.util.*;
 
 public class LogicXmlUtil {
+    // 与 Transformer（indent=yes）输出相同的 XML 声明
+    private static final String DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>";
+    private static final int INDENT = 4;
+
+    // XMLInputFactory 的线程安全性没有保证，每个线程各用一个；与 DOM 解析一致，不区分命名空间（标签与属性名按原样读取）
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY = ThreadLocal.withInitial(() -> {
+        XMLInputFactory f = XMLInputFactory.newInstance();
+        f.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+        return f;
+    });
+
+    /**
+     * 把 DOM 元素解析为 LogicNode 树（显式栈遍历，嵌套深度不受调用栈限制）
+     * - 注释节点暂存，附加到其后的第一个逻辑子元素；之后没有逻辑子元素的注释附加到当前节点
+     */
     public static LogicNode parseXml(Element e, int[] nodeIdCounter) {
-        String tag = e.getTagName();
+        DomParser parser = new DomParser(nodeIdCounter);
+        LogicTreeWalker.walk(e, LogicTreeWalker.DOM, parser);
+        return parser.root;
+    }
+
+    // DOM 遍历访问者：逻辑元素的深度即其在 LogicNode 树中的深度，各层的节点与暂存注释按深度保存
+    private static final class DomParser implements LogicTreeWalker.Visitor<org.w3c.dom.Node> {
+        private final int[] nodeIdCounter;
+        private final List<LogicNode> nodes = new ArrayList<>();
+        // 每层收集的、等待附加到下一个逻辑子节点的注释（列表按层复用）
+        private final List<List<String>> pending = new ArrayList<>();
+        LogicNode root;
+
+        DomParser(int[] nodeIdCounter) {
+            this.nodeIdCounter = nodeIdCounter;
+        }
+
+        @Override
+        public LogicTreeWalker.Action enter(org.w3c.dom.Node childNode, int depth) {
+            if (depth == 0) {
+                root = createNode((Element) childNode, nodeIdCounter);
+                push(0, root);
+                return LogicTreeWalker.Action.CONTINUE;
+            }
+            LogicNode node = nodes.get(depth - 1);
+            // collect pending comments to attach to next logic child
+            if (childNode.getNodeType() == org.w3c.dom.Node.COMMENT_NODE) {
+                String txt = childNode.getNodeValue();
+                if (txt != null) txt = txt.trim();
+                if (txt != null && !txt.isEmpty()) pending.get(depth - 1).add(txt);
+                return LogicTreeWalker.Action.SKIP;
+            }
+            if (!(childNode instanceof Element)) return LogicTreeWalker.Action.SKIP;
+            Element ce = (Element)childNode;
+            if (ce.getTagName().equals("param")) {
+                node.paramList.add(attributes(ce));
+            } else if (ce.getTagName().equals("filter") && (node.type==LogicNode.NodeType.FORALL || node.type==LogicNode.NodeType.EXISTS)) {
+                // 解析filter子标签
+                node.filter.putAll(attributes(ce));
+                NodeList filterChildren = ce.getChildNodes();
+                for (int k=0;k<filterChildren.getLength();k++) {
+                    org.w3c.dom.Node fchild = filterChildren.item(k);
+                    if (fchild instanceof Element && ((Element)fchild).getTagName().equals("param")) {
+                        node.filterParamList.add(attributes((Element)fchild));
+                    }
+                }
+            } else {
+                // child is a logic sub-node
+                LogicNode childLogic = createNode(ce, nodeIdCounter);
+                node.children.add(childLogic);
+                push(depth, childLogic);
+                return LogicTreeWalker.Action.CONTINUE;
+            }
+            return LogicTreeWalker.Action.SKIP;
+        }
+
+        @Override
+        public void exit(org.w3c.dom.Node element, int depth) {
+            LogicNode node = nodes.get(depth);
+            // if there are leftover comments that didn't precede any child logic node, attach them to current node
+            List<String> leftover = pending.get(depth);
+            if (!leftover.isEmpty()) {
+                node.comments.addAll(leftover);
+                leftover.clear();
+            }
+            // attach the comments that preceded this node in its parent (concatenate as separate entries)
+            if (depth > 0) {
+                List<String> before = pending.get(depth - 1);
+                if (!before.isEmpty()) {
+                    node.comments.addAll(before);
+                    before.clear();
+                }
+            }
+        }
+
+        private void push(int depth, LogicNode node) {
+            if (depth == nodes.size()) {
+                nodes.add(node);
+                pending.add(new ArrayList<>());
+            } else {
+                nodes.set(depth, node);
+            }
+        }
+    }
+
+    /**
+     * 从文件直接构建 LogicNode 树，见 parseXml(InputStream, String, int[])
+     */
+    public static LogicNode parseXml(File file, int[] nodeIdCounter) throws IOException, XMLStreamException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            return parseXml(in, file.toURI().toString(), nodeIdCounter);
+        }
+    }
+
+    /**
+     * 用 StAX 单遍读取输入流，直接构建 LogicNode 树（不建立 DOM），结果与先解析为 DOM 再调用 parseXml(Element, int[]) 相同：
+     * - 注释暂存，附加到其后的第一个逻辑子元素；之后没有逻辑子元素的注释附加到当前节点；根元素之外的注释忽略
+     * - param / filter 元素读入参数后跳过其内容；未知元素的 unknownContent 为其全部子孙文本（去掉首尾空白）
+     * - 属性按名称排序加入 params（与 DOM 的属性表顺序一致）
+     * - 只用显式栈，嵌套深度不受调用栈限制
+     * @param systemId 用于解析相对的外部实体引用，可为 null
+     */
+    public static LogicNode parseXml(InputStream in, String systemId, int[] nodeIdCounter) throws XMLStreamException {
+        XMLStreamReader r = INPUT_FACTORY.get().createXMLStreamReader(systemId, in);
+        try {
+            return new StreamParser(r, nodeIdCounter).parse();
+        } finally {
+            r.close();
+        }
+    }
+
+    // StAX 读取：与 DomParser 一样按深度保存各层节点与暂存注释
+    private static final class StreamParser {
+        private final XMLStreamReader r;
+        private final int[] nodeIdCounter;
+        private final List<LogicNode> nodes = new ArrayList<>();
+        private final List<List<String>> pending = new ArrayList<>();
+        // 打开中的未知元素共享同一段文本缓冲，各自记录起点（不是未知元素的层为 -1）
+        private final StringBuilder text = new StringBuilder();
+        private int[] textStart = new int[32];
+        private int openUnknown = 0;
+
+        StreamParser(XMLStreamReader r, int[] nodeIdCounter) {
+            this.r = r;
+            this.nodeIdCounter = nodeIdCounter;
+        }
+
+        LogicNode parse() throws XMLStreamException {
+            while (r.hasNext() && r.next() != XMLStreamConstants.START_ELEMENT) {
+                // 跳过根元素之前的内容
+            }
+            if (!r.isStartElement()) throw new XMLStreamException("缺少根元素");
+            LogicNode root = open(0);
+            int depth = 0;
+            while (depth >= 0) {
+                switch (r.next()) {
+                    case XMLStreamConstants.START_ELEMENT: {
+                        LogicNode node = nodes.get(depth);
+                        String tag = r.getLocalName();
+                        if (tag.equals("param")) {
+                            node.paramList.add(attributes(r));
+                            skipContent();
+                        } else if (tag.equals("filter") && (node.type==LogicNode.NodeType.FORALL || node.type==LogicNode.NodeType.EXISTS)) {
+                            node.filter.putAll(attributes(r));
+                            readFilterContent(node);
+                        } else {
+                            node.children.add(open(++depth));
+                        }
+                        break;
+                    }
+                    case XMLStreamConstants.END_ELEMENT:
+                        close(depth--);
+                        break;
+                    case XMLStreamConstants.COMMENT: {
+                        String txt = r.getText();
+                        if (txt != null) txt = txt.trim();
+                        if (txt != null && !txt.isEmpty()) pending.get(depth).add(txt);
+                        break;
+                    }
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                        appendText();
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return root;
+        }
+
+        // 当前 START_ELEMENT 作为深度 depth 的逻辑节点
+        private LogicNode open(int depth) {
+            LogicNode node = createNode(r.getLocalName(), nodeIdCounter);
+            node.params.putAll(attributes(r));
+            if (depth == nodes.size()) {
+                nodes.add(node);
+                pending.add(new ArrayList<>());
+            } else {
+                nodes.set(depth, node);
+            }
+            if (depth == textStart.length) textStart = Arrays.copyOf(textStart, depth * 2);
+            if (node.type == LogicNode.NodeType.UNKNOWN) {
+                textStart[depth] = text.length();
+                openUnknown++;
+            } else {
+                textStart[depth] = -1;
+            }
+            return node;
+        }
+
+        private void close(int depth) {
+            LogicNode node = nodes.get(depth);
+            if (textStart[depth] >= 0) {
+                node.unknownContent = text.substring(textStart[depth]).trim();
+                if (--openUnknown == 0) text.setLength(0);
+            }
+            // 没有出现在任何逻辑子节点之前的注释附加到当前节点，之后是当前节点之前的注释
+            List<String> leftover = pending.get(depth);
+            if (!leftover.isEmpty()) {
+                node.comments.addAll(leftover);
+                leftover.clear();
+            }
+            if (depth > 0) {
+                List<String> before = pending.get(depth - 1);
+                if (!before.isEmpty()) {
+                    node.comments.addAll(before);
+                    before.clear();
+                }
+            }
+        }
+
+        // 量词的 filter：直接子元素 param 为过滤器参数，其余内容跳过
+        private void readFilterContent(LogicNode node) throws XMLStreamException {
+            while (true) {
+                int ev = r.next();
+                if (ev == XMLStreamConstants.END_ELEMENT) return;
+                if (ev == XMLStreamConstants.START_ELEMENT) {
+                    if (r.getLocalName().equals("param")) node.filterParamList.add(attributes(r));
+                    skipContent();
+                } else if (ev == XMLStreamConstants.CHARACTERS || ev == XMLStreamConstants.CDATA) {
+                    appendText();
+                }
+            }
+        }
+
+        // 跳到当前元素的 END_ELEMENT；其中的文本仍计入打开中的未知元素
+        private void skipContent() throws XMLStreamException {
+            int level = 1;
+            while (level > 0) {
+                int ev = r.next();
+                if (ev == XMLStreamConstants.START_ELEMENT) level++;
+                else if (ev == XMLStreamConstants.END_ELEMENT) level--;
+                else if (ev == XMLStreamConstants.CHARACTERS || ev == XMLStreamConstants.CDATA) appendText();
+            }
+        }
+
+        private void appendText() {
+            if (openUnknown > 0) text.append(r.getTextCharacters(), r.getTextStart(), r.getTextLength());
+        }
+    }
+
+    // 当前 START_ELEMENT 的属性，按名称排序
+    private static Map<String,String> attributes(XMLStreamReader r) {
+        int n = r.getAttributeCount();
+        if (n == 0) return new LinkedHashMap<>();
+        TreeMap<String,String> sorted = new TreeMap<>();
+        for (int i=0;i<n;i++) {
+            String prefix = r.getAttributePrefix(i);
+            String name = prefix == null || prefix.isEmpty() ? r.getAttributeLocalName(i) : prefix + ":" + r.getAttributeLocalName(i);
+            sorted.put(name, r.getAttributeValue(i));
+        }
+        return new LinkedHashMap<>(sorted);
+    }
+
+    // 按标签创建节点并读取属性（不含子元素）
+    private static LogicNode createNode(Element e, int[] nodeIdCounter) {
+        LogicNode node = createNode(e.getTagName(), nodeIdCounter);
+        // 如果节点类型未知，记录原始标签与内容供可视化展示
+        if (node.type == LogicNode.NodeType.UNKNOWN) {
+            String txt = e.getTextContent();
+            node.unknownContent = txt == null ? "" : txt.trim();
+        }
+        node.params.putAll(attributes(e));
+        return node;
+    }
+
+    // 按标签创建节点；未知标签记录在 unknownTag 中
+    private static LogicNode createNode(String tag, int[] nodeIdCounter) {
         LogicNode.NodeType type;
         switch(tag) {
             case "rules": type = LogicNode.NodeType.RULES; break;
@@ -21,79 +310,271 @@ public class LogicXmlUtil {
             default: type = LogicNode.NodeType.UNKNOWN; break;
         }
         LogicNode node = new LogicNode(type, nodeIdCounter[0]++);
-        // 如果节点类型未知，记录原始标签与内容供可视化展示
-        if (type == LogicNode.NodeType.UNKNOWN) {
-            node.unknownTag = tag;
-            String txt = e.getTextContent();
-            node.unknownContent = txt == null ? "" : txt.trim();
-        }
+        if (type == LogicNode.NodeType.UNKNOWN) node.unknownTag = tag;
+        return node;
+    }
+
+    private static Map<String,String> attributes(Element e) {
+        Map<String,String> out = new LinkedHashMap<>();
         NamedNodeMap attrs = e.getAttributes();
         for (int i=0;i<attrs.getLength();i++) {
             Attr a = (Attr)attrs.item(i);
-            node.params.put(a.getName(), a.getValue());
+            out.put(a.getName(), a.getValue());
         }
-        NodeList children = e.getChildNodes();
-        // collect pending comments to attach to next logic child
-        java.util.List<String> pendingComments = new java.util.ArrayList<>();
-        for (int i=0;i<children.getLength();i++) {
-            org.w3c.dom.Node childNode = children.item(i);
-            if (childNode.getNodeType() == org.w3c.dom.Node.COMMENT_NODE) {
-                String txt = childNode.getNodeValue();
-                if (txt != null) txt = txt.trim();
-                if (txt != null && !txt.isEmpty()) pendingComments.add(txt);
-                continue;
+        return out;
+    }
+    /**
+     * 把整棵树直接写到输出流（显式栈遍历，不建立 DOM），输出与 toXml 生成的文档经 Transformer（indent=yes）
+     * 序列化的字节完全相同：
+     * - 声明之后依次是 documentComments（文档级注释，与根元素同一行），再是根元素；根节点自身的注释不写出
+     * - 先写命名空间声明（xmlns、xmlns:前缀；作用域内已有相同绑定的与带前缀的取消声明省略），再写其余属性，各自按名称排序；
+     *   缩进 4 个空格，换行为 line.separator；没有子内容的元素写成空元素标签
+     * - 不覆盖 Transformer 本身出错或改写名称的属性：使用未声明前缀的属性（Transformer 抛出异常）、
+     *   以 xmlns 开头但不是 xmlns / xmlns:前缀 的保留名称（Transformer 改写为 xmlns）
+     * - 属性值中的控制字符与增补字符写为字符引用；注释中的 "--" 与末尾的 "-" 之后补一个空格
+     * 调用方负责关闭 out
+     */
+    public static void writeXml(LogicNode root, List<String> documentComments, OutputStream out) throws IOException {
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        XmlWriter xw = new XmlWriter(w);
+        w.write(DECLARATION);
+        xw.newline(0);
+        for (String c : documentComments) xw.comment(c);
+        IOException[] failure = {null};
+        LogicTreeWalker.walk(root, new LogicTreeWalker.Visitor<LogicNode>() {
+            @Override
+            public LogicTreeWalker.Action enter(LogicNode n, int depth) {
+                try {
+                    return xw.enter(n, depth) ? LogicTreeWalker.Action.CONTINUE : LogicTreeWalker.Action.SKIP;
+                } catch (IOException ex) {
+                    failure[0] = ex;
+                    return LogicTreeWalker.Action.STOP;
+                }
             }
-            if (childNode instanceof Element) {
-                Element ce = (Element)childNode;
-                if (ce.getTagName().equals("param")) {
-                    Map<String,String> param = new LinkedHashMap<>();
-                    NamedNodeMap paramAttrs = ce.getAttributes();
-                    for (int j=0;j<paramAttrs.getLength();j++) {
-                        Attr pa = (Attr)paramAttrs.item(j);
-                        param.put(pa.getName(), pa.getValue());
-                    }
-                    node.paramList.add(param);
-                } else if (ce.getTagName().equals("filter") && (type==LogicNode.NodeType.FORALL || type==LogicNode.NodeType.EXISTS)) {
-                    // 解析filter子标签
-                    NamedNodeMap filterAttrs = ce.getAttributes();
-                    for (int j=0;j<filterAttrs.getLength();j++) {
-                        Attr fa = (Attr)filterAttrs.item(j);
-                        node.filter.put(fa.getName(), fa.getValue());
-                    }
-                    NodeList filterChildren = ce.getChildNodes();
-                    for (int k=0;k<filterChildren.getLength();k++) {
-                        org.w3c.dom.Node fchild = filterChildren.item(k);
-                        if (fchild instanceof Element && ((Element)fchild).getTagName().equals("param")) {
-                            Map<String,String> fparam = new LinkedHashMap<>();
-                            NamedNodeMap fparamAttrs = ((Element)fchild).getAttributes();
-                            for (int m=0;m<fparamAttrs.getLength();m++) {
-                                Attr fpa = (Attr)fparamAttrs.item(m);
-                                fparam.put(fpa.getName(), fpa.getValue());
-                            }
-                            node.filterParamList.add(fparam);
-                        }
+
+            @Override
+            public void exit(LogicNode n, int depth) {
+                if (failure[0] != null) return;
+                try {
+                    xw.newline(depth);
+                    xw.endTag(tagOf(n));
+                } catch (IOException ex) {
+                    failure[0] = ex;
+                }
+            }
+        });
+        if (failure[0] != null) throw failure[0];
+        xw.newline(0);
+        w.flush();
+    }
+
+    // writeXml 的逐节点输出
+    private static final class XmlWriter {
+        private final Writer w;
+        private final char[] lineSeparator = System.lineSeparator().toCharArray();
+        private char[] indent = new char[0];
+        // 当前作用域内的命名空间绑定（前缀 -> URI，未绑定视为 ""），与各层开始标签登记的 {前缀, 原绑定}，结束标签时恢复
+        private final Map<String,String> namespaces = new HashMap<>();
+        private final ArrayDeque<List<String[]>> namespaceScopes = new ArrayDeque<>();
+
+        XmlWriter(Writer w) {
+            this.w = w;
+        }
+
+        // 写出节点的注释与开始标签；没有子内容时写成空元素并返回 false
+        boolean enter(LogicNode node, int depth) throws IOException {
+            if (depth > 0) {
+                // 子节点的注释作为独立注释写在其元素之前（与 toXml 相同：去掉首尾空白，跳过空注释）
+                if (node.comments != null) {
+                    for (String com : node.comments) {
+                        if (com == null) continue;
+                        String txt = com.trim();
+                        if (txt.isEmpty()) continue;
+                        newline(depth);
+                        comment(txt);
                     }
+                }
+                newline(depth);
+            }
+            String tag = tagOf(node);
+            boolean filter = (node.type==LogicNode.NodeType.FORALL || node.type==LogicNode.NodeType.EXISTS) && !node.filter.isEmpty();
+            if (node.children.isEmpty() && node.paramList.isEmpty() && !filter) {
+                startTag(tag, node.params, true);
+                return false;
+            }
+            startTag(tag, node.params, false);
+            for (Map<String,String> param : node.paramList) {
+                newline(depth + 1);
+                startTag("param", param, true);
+            }
+            if (filter) {
+                newline(depth + 1);
+                if (node.filterParamList.isEmpty()) {
+                    startTag("filter", node.filter, true);
                 } else {
-                    // child is a logic sub-node
-                    LogicNode childLogic = parseXml(ce, nodeIdCounter);
-                    // attach any pending comments (concatenate as separate entries)
-                    if (!pendingComments.isEmpty()) {
-                        childLogic.comments.addAll(pendingComments);
-                        pendingComments.clear();
+                    startTag("filter", node.filter, false);
+                    for (Map<String,String> param : node.filterParamList) {
+                        newline(depth + 2);
+                        startTag("param", param, true);
                     }
-                    node.children.add(childLogic);
+                    newline(depth + 1);
+                    endTag("filter");
+                }
+            }
+            return true;
+        }
+
+        // 开始标签，empty 时写成空元素标签
+        // 与 Transformer 相同：先写命名空间声明（xmlns、xmlns:前缀），与作用域内已有绑定相同的声明与带前缀的取消声明省略；
+        // 再写其余属性；各自按名称排序
+        void startTag(String tag, Map<String,String> attrs, boolean empty) throws IOException {
+            w.write('<');
+            w.write(tag);
+            List<String[]> declared = null;
+            if (!attrs.isEmpty()) {
+                Map<String,String> sorted = attrs.size() == 1 ? attrs : new TreeMap<>(attrs);
+                for (Map.Entry<String,String> e : sorted.entrySet()) {
+                    String prefix = namespacePrefix(e.getKey());
+                    if (prefix == null || e.getValue().equals(namespaces.getOrDefault(prefix, ""))) continue;
+                    // 带前缀的取消声明（xmlns:p=""）在 XML 1.0 中不合法，Transformer 不写出，但仍改变作用域内的绑定
+                    if (prefix.isEmpty() || !e.getValue().isEmpty()) attribute(e.getKey(), e.getValue());
+                    if (empty) continue;
+                    if (declared == null) declared = new ArrayList<>(2);
+                    declared.add(new String[]{prefix, namespaces.put(prefix, e.getValue())});
+                }
+                for (Map.Entry<String,String> e : sorted.entrySet()) {
+                    if (namespacePrefix(e.getKey()) == null) attribute(e.getKey(), e.getValue());
                 }
             }
+            if (!empty) namespaceScopes.push(declared == null ? Collections.emptyList() : declared);
+            w.write(empty ? "/>" : ">");
         }
-        // if there are leftover comments that didn't precede any child logic node, attach them to current node
-        if (!pendingComments.isEmpty()) {
-            node.comments.addAll(pendingComments);
-            pendingComments.clear();
+
+        // 命名空间声明的前缀（xmlns 为 ""），不是声明返回 null
+        private static String namespacePrefix(String name) {
+            if (name.equals("xmlns")) return "";
+            return name.startsWith("xmlns:") ? name.substring("xmlns:".length()) : null;
+        }
+
+        private void attribute(String name, String value) throws IOException {
+            w.write(' ');
+            w.write(name);
+            w.write("=\"");
+            w.write(escapeAttribute(value));
+            w.write('"');
+        }
+
+        void endTag(String tag) throws IOException {
+            for (String[] d : namespaceScopes.pop()) {
+                if (d[1] == null) namespaces.remove(d[0]);
+                else namespaces.put(d[0], d[1]);
+            }
+            w.write("</");
+            w.write(tag);
+            w.write('>');
+        }
+
+        void comment(String text) throws IOException {
+            w.write("<!--");
+            w.write(escapeComment(text));
+            w.write("-->");
+        }
+
+        // 换行并缩进到 depth 层
+        void newline(int depth) throws IOException {
+            int n = depth * INDENT;
+            if (indent.length < lineSeparator.length + n) {
+                indent = new char[lineSeparator.length + Math.max(n, indent.length * 2)];
+                System.arraycopy(lineSeparator, 0, indent, 0, lineSeparator.length);
+                Arrays.fill(indent, lineSeparator.length, indent.length, ' ');
+            }
+            w.write(indent, 0, lineSeparator.length + n);
+        }
+    }
+
+    // 与 createElement 相同的标签
+    private static String tagOf(LogicNode node) {
+        switch(node.type) {
+            case RULES: return "rules";
+            case RULE: return "rule";
+            case FORALL: return "forall";
+            case EXISTS: return "exists";
+            case AND: return "and";
+            case OR: return "or";
+            case IMPLIES: return "implies";
+            case NOT: return "not";
+            case BFUNC: return "bfunc";
+            case FORMULA: return "formula";
+            default: return "unknown";
         }
-        return node;
     }
-    // 树转XML
+
+    // 属性值转义：& < > " 用实体，控制字符与增补字符用十进制字符引用
+    static String escapeAttribute(String v) {
+        StringBuilder sb = null;
+        int len = v.length();
+        for (int i = 0; i < len; i++) {
+            char c = v.charAt(i);
+            String rep;
+            int skip = 0;
+            if (c == '&') rep = "&amp;";
+            else if (c == '<') rep = "&lt;";
+            else if (c == '>') rep = "&gt;";
+            else if (c == '"') rep = "&quot;";
+            else if (c < 0x20) rep = "&#" + (int) c + ";";
+            else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(v.charAt(i + 1))) {
+                rep = "&#" + Character.toCodePoint(c, v.charAt(i + 1)) + ";";
+                skip = 1;
+            } else {
+                if (sb != null) sb.append(c);
+                continue;
+            }
+            if (sb == null) sb = new StringBuilder(len + 16).append(v, 0, i);
+            sb.append(rep);
+            i += skip;
+        }
+        return sb == null ? v : sb.toString();
+    }
+
+    // 注释中不允许 "--" 且不能以 "-" 结尾：在这样的 "-" 之后补一个空格
+    static String escapeComment(String c) {
+        if (c.indexOf('-') < 0) return c;
+        StringBuilder sb = new StringBuilder(c.length() + 4);
+        for (int i = 0; i < c.length(); i++) {
+            char ch = c.charAt(i);
+            sb.append(ch);
+            if (ch == '-' && (i + 1 == c.length() || c.charAt(i + 1) == '-')) sb.append(' ');
+        }
+        return sb.toString();
+    }
+
+    // 树转XML（显式栈遍历；子节点的注释作为独立注释节点写在其元素之前）
     public static Element toXml(LogicNode node, Document doc) {
+        List<Element> elements = new ArrayList<>();
+        LogicTreeWalker.walk(node, (n, depth) -> {
+            Element e = createElement(n, doc);
+            if (depth > 0) {
+                Element parent = elements.get(depth - 1);
+                // if child has comments, add each comment as a separate COMMENT node before the element
+                if (n.comments != null && !n.comments.isEmpty()) {
+                    for (String com : n.comments) {
+                        if (com == null) continue;
+                        String txt = com.trim();
+                        if (txt.isEmpty()) continue;
+                        parent.appendChild(doc.createComment(txt));
+                    }
+                }
+                parent.appendChild(e);
+            }
+            if (depth == elements.size()) elements.add(e);
+            else elements.set(depth, e);
+            return LogicTreeWalker.Action.CONTINUE;
+        });
+        return elements.get(0);
+    }
+
+    // 节点自身的元素：属性、param 与 filter 子标签（不含逻辑子节点）
+    private static Element createElement(LogicNode node, Document doc) {
         String tag;
         switch(node.type) {
             case RULES: tag = "rules"; break;
@@ -135,18 +616,6 @@ public class LogicXmlUtil {
             }
             e.appendChild(filterE);
         }
-        for (LogicNode child : node.children) {
-            // if child has comments, add each comment as a separate COMMENT node before the element
-            if (child.comments != null && !child.comments.isEmpty()) {
-                for (String com : child.comments) {
-                    if (com == null) continue;
-                    String txt = com.trim();
-                    if (txt.isEmpty()) continue;
-                    e.appendChild(doc.createComment(txt));
-                }
-            }
-            e.appendChild(toXml(child, doc));
-        }
         return e;
     }
 }
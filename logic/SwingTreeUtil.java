@@ -6,33 +6,18 @@ import javax.swing.tree.*;
 public class SwingTreeUtil {
 
     /**
-     * 收集当前树上所有展开节点的 LogicNode id 列表（按深度优先遍历）。
+     * 收集当前树上所有展开节点的 LogicNode id 列表（只访问已展开的路径）。
      */
-    public static java.util.List<Integer> collectExpandedIds(JTree tree, DefaultMutableTreeNode swingRoot) {
+    public static java.util.List<Integer> collectExpandedIds(JTree tree) {
         java.util.List<Integer> out = new java.util.ArrayList<>();
-        if (tree == null || swingRoot == null) return out;
-        collectExpandedIdsImpl(tree, swingRoot, out);
-        return out;
-    }
-    private static void collectExpandedIdsImpl(JTree tree, DefaultMutableTreeNode node, java.util.List<Integer> out) {
-        TreePath path = new TreePath(node.getPath());
-        if (tree.isExpanded(path)) {
-            Object uo = node.getUserObject();
-            if (uo != null) {
-                String s = uo.toString();
-                if (s.startsWith("[")) {
-                    int idx = s.indexOf("]");
-                    if (idx > 1) {
-                        try { out.add(Integer.parseInt(s.substring(1, idx))); } catch(Exception ex) {}
-                    }
-                }
-            }
-        }
-        for (int i = 0; i < node.getChildCount(); i++) {
-            javax.swing.tree.TreeNode tn = node.getChildAt(i);
-            if (!(tn instanceof DefaultMutableTreeNode)) continue;
-            collectExpandedIdsImpl(tree, (DefaultMutableTreeNode)tn, out);
+        if (tree == null) return out;
+        java.util.Enumeration<TreePath> en = tree.getExpandedDescendants(new TreePath(tree.getModel().getRoot()));
+        if (en == null) return out;
+        while (en.hasMoreElements()) {
+            Object last = en.nextElement().getLastPathComponent();
+            if (last instanceof LogicNode) out.add(((LogicNode) last).nodeId);
         }
+        return out;
     }
 
     /**
@@ -40,115 +25,66 @@ public class SwingTreeUtil {
      */
     public static Integer findSelectedNodeId(JTree tree) {
         if (tree == null) return null;
-        TreePath sel = tree.getSelectionPath();
-        if (sel == null) return null;
-        Object last = sel.getLastPathComponent();
-        if (!(last instanceof DefaultMutableTreeNode)) return null;
-        Object uo = ((DefaultMutableTreeNode)last).getUserObject();
-        if (uo == null) return null;
-        String s = uo.toString();
-        if (s.startsWith("[")) {
-            int idx = s.indexOf("]");
-            if (idx > 1) {
-                try { return Integer.parseInt(s.substring(1, idx)); } catch(Exception ex) {}
-            }
-        }
-        return null;
+        LogicNode ln = TreeHelper.findNode(tree.getSelectionPath());
+        return ln == null ? null : ln.nodeId;
     }
 
     /**
      * 根据 expandedIds 列表展开对应节点，并设置选中节点（若存在）。
      * best-effort：若某 id 对应的节点不存在则忽略。
      */
-    public static void applyUiState(JTree tree, DefaultMutableTreeNode swingRoot, java.util.List<Integer> expandedIds, Integer selectedId) {
-        if (tree == null || swingRoot == null) return;
+    public static void applyUiState(JTree tree, java.util.List<Integer> expandedIds, Integer selectedId) {
+        if (tree == null) return;
         java.util.Set<Integer> set = new java.util.HashSet<>();
         if (expandedIds != null) set.addAll(expandedIds);
-        // 深度遍历展开匹配 id 的节点
-        applyUiStateImpl(tree, swingRoot, set);
+        // 展开的节点其祖先必然也已展开，因此只需沿展开的节点向下查找
+        Object root = tree.getModel().getRoot();
+        if (root instanceof LogicNode && set.contains(((LogicNode) root).nodeId)) applyUiStateImpl(tree, new TreePath(root), set);
         // 选择
-        if (selectedId != null) {
-            DefaultMutableTreeNode found = findSwingNodeById(swingRoot, selectedId);
-            if (found != null) {
-                TreePath p = new TreePath(found.getPath());
-                tree.setSelectionPath(p);
-                // 确保选中节点可见
-                tree.scrollPathToVisible(p);
-            }
-        }
-    }
-    private static void applyUiStateImpl(JTree tree, DefaultMutableTreeNode node, java.util.Set<Integer> set) {
-        Object uo = node.getUserObject();
-        if (uo != null) {
-            String s = uo.toString();
-            if (s.startsWith("[")) {
-                int idx = s.indexOf("]");
-                if (idx > 1) {
-                    try {
-                        int id = Integer.parseInt(s.substring(1, idx));
-                        if (set.contains(id)) tree.expandPath(new TreePath(node.getPath()));
-                    } catch(Exception ex) {}
-                }
-            }
-        }
-        for (int i=0;i<node.getChildCount();i++) {
-            javax.swing.tree.TreeNode tn = node.getChildAt(i);
-            if (tn instanceof DefaultMutableTreeNode) applyUiStateImpl(tree, (DefaultMutableTreeNode)tn, set);
-        }
+        if (selectedId != null) selectNodeById(tree, selectedId);
     }
 
-    private static DefaultMutableTreeNode findSwingNodeById(DefaultMutableTreeNode root, int id) {
-        Object uo = root.getUserObject();
-        if (uo != null) {
-            String s = uo.toString();
-            if (s.startsWith("[")) {
-                int idx = s.indexOf("]");
-                if (idx > 1) {
-                    try { if (Integer.parseInt(s.substring(1, idx)) == id) return root; } catch(Exception ex) {}
-                }
-            }
-        }
-        for (int i=0;i<root.getChildCount();i++) {
-            javax.swing.tree.TreeNode tn = root.getChildAt(i);
-            if (!(tn instanceof DefaultMutableTreeNode)) continue;
-            DefaultMutableTreeNode found = findSwingNodeById((DefaultMutableTreeNode)tn, id);
-            if (found != null) return found;
-        }
-        return null;
+    /**
+     * 选中 id 对应的树节点并滚动到可见位置，返回是否找到。
+     * 路径由模型的节点索引沿父节点求得（与节点深度成正比），百万节点的规则集上撤销后恢复选中、单击图节点也不遍历整棵树。
+     */
+    public static boolean selectNodeById(JTree tree, int id) {
+        if (tree == null || !(tree.getModel() instanceof LogicTreeModel)) return false;
+        TreePath p = ((LogicTreeModel) tree.getModel()).findPathById(id);
+        if (p == null) return false;
+        tree.setSelectionPath(p);
+        // 确保选中节点可见
+        tree.scrollPathToVisible(p);
+        return true;
+    }
+    /**
+     * base 及其子孙中当前展开的路径（子树移动前调用，配合 expandMoved 恢复）。
+     */
+    public static java.util.List<TreePath> collectExpandedPaths(JTree tree, TreePath base) {
+        java.util.List<TreePath> out = new java.util.ArrayList<>();
+        java.util.Enumeration<TreePath> en = tree.getExpandedDescendants(base);
+        if (en == null) return out;
+        while (en.hasMoreElements()) out.add(en.nextElement());
+        return out;
     }
 
-    // 构建Swing树
-    public static void buildSwingTree(logic.LogicNode node, DefaultMutableTreeNode swingNode) {
-        swingNode.setUserObject(node.toString());
-        swingNode.removeAllChildren();
-        for (logic.LogicNode child : node.children) {
-            DefaultMutableTreeNode c = new DefaultMutableTreeNode(child.toString());
-            buildSwingTree(child, c);
-            swingNode.add(c);
+    /**
+     * 子树从 oldBase 移到 newBase 后，按相对路径重新展开原来展开的节点。
+     */
+    public static void expandMoved(JTree tree, java.util.List<TreePath> expanded, TreePath oldBase, TreePath newBase) {
+        int skip = oldBase.getPathCount();
+        for (TreePath p : expanded) {
+            TreePath q = newBase;
+            for (int i = skip; i < p.getPathCount(); i++) q = q.pathByAddingChild(p.getPathComponent(i));
+            tree.expandPath(q);
         }
     }
-    // 检查 Swing 树节点的子孙中是否存在错误节点（依据 LogicValidator.errorNodeMap）
-    static boolean swingSubtreeHasError(DefaultMutableTreeNode swingNode) {
-        for (int i = 0; i < swingNode.getChildCount(); i++) {
-            javax.swing.tree.TreeNode tn = swingNode.getChildAt(i);
-            if (!(tn instanceof DefaultMutableTreeNode)) continue;
-            DefaultMutableTreeNode child = (DefaultMutableTreeNode) tn;
-            Object uo = child.getUserObject();
-            if (uo != null) {
-                String s = uo.toString();
-                if (s.startsWith("[")) {
-                    int idx = s.indexOf("]");
-                    if (idx > 1) {
-                        try {
-                            int cid = Integer.parseInt(s.substring(1, idx));
-                            if (logic.LogicValidator.errorNodeMap.containsKey(cid)) return true;
-                        } catch (Exception ex) {
-                        }
-                    }
-                }
-            }
-            if (swingSubtreeHasError(child)) return true;
-        }
-        return false;
+
+    private static void applyUiStateImpl(JTree tree, TreePath path, java.util.Set<Integer> set) {
+        LogicTreeWalker.walk(path, LogicTreeWalker.PATHS, (p, depth) -> {
+            if (depth > 0 && !set.contains(((LogicNode) p.getLastPathComponent()).nodeId)) return LogicTreeWalker.Action.SKIP;
+            tree.expandPath(p);
+            return LogicTreeWalker.Action.CONTINUE;
+        });
     }
 }
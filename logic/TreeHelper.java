@@ -4,56 +4,41 @@ import javax.swing.tree.*;
 import java.util.*;
 
 public class TreeHelper {
-    // 收集所有可选目标节点（排除自身、子孙节点，可选排除祖先节点）
-    public static void collectNodes(DefaultMutableTreeNode cur, DefaultMutableTreeNode exclude, List<DefaultMutableTreeNode> out, boolean excludeAncestor) {
-        if (cur==exclude) return;
-        // 排除子孙节点
-        boolean isDescendant = false;
-        TreeNode[] excludePath = exclude.getPath();
-        TreeNode[] curPath = cur.getPath();
-        if (curPath.length>=excludePath.length) {
-            isDescendant = true;
-            for (int i=0;i<excludePath.length;i++) {
-                if (curPath[i]!=excludePath[i]) { isDescendant=false; break; }
+    // 收集所有可选目标节点（排除 exclude 路径末端节点及其子孙节点，可选排除其祖先节点）
+    public static void collectNodes(LogicNode cur, TreePath exclude, List<LogicNode> out, boolean excludeAncestor) {
+        Set<LogicNode> ancestors = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (excludeAncestor) {
+            for (TreePath p = exclude.getParentPath(); p != null; p = p.getParentPath()) {
+                if (p.getLastPathComponent() instanceof LogicNode) ancestors.add((LogicNode) p.getLastPathComponent());
             }
-        } else isDescendant=false;
-        // 可选排除祖先节点
-        boolean isAncestor = false;
-        if (excludeAncestor && excludePath.length>=curPath.length) {
-            isAncestor = true;
-            for (int i=0;i<curPath.length;i++) {
-                if (curPath[i]!=excludePath[i]) { isAncestor=false; break; }
-            }
-        } else isAncestor=false;
-        if (!isDescendant && !isAncestor) out.add(cur);
-        for (int i=0;i<cur.getChildCount();i++) {
-            collectNodes((DefaultMutableTreeNode)cur.getChildAt(i), exclude, out, excludeAncestor);
         }
+        Object excluded = exclude.getLastPathComponent();
+        LogicTreeWalker.walk(cur, (n, depth) -> {
+            // 排除自身及子孙节点
+            if (n==excluded) return LogicTreeWalker.Action.SKIP;
+            if (!ancestors.contains(n)) out.add(n);
+            return LogicTreeWalker.Action.CONTINUE;
+        });
     }
-    // 查找节点
-    public static LogicNode findNode(LogicNode logic, DefaultMutableTreeNode swing, DefaultMutableTreeNode swingRoot) {
-        if (swing==swingRoot) return logic;
-        TreeNode[] path = swing.getPath();
-        LogicNode cur = logic;
-        for (int i=1;i<path.length;i++) {
-            String label = path[i].toString();
-            Optional<LogicNode> next = cur.children.stream().filter(n->n.toString().equals(label)).findFirst();
-            if (next.isEmpty()) return null;
-            cur = next.get();
-        }
-        return cur;
+    // 按后序（先子孙后自身）收集全部节点
+    public static void collectPostorder(LogicNode cur, List<LogicNode> out) {
+        LogicTreeWalker.walk(cur, new LogicTreeWalker.Visitor<LogicNode>() {
+            @Override
+            public LogicTreeWalker.Action enter(LogicNode n, int depth) { return LogicTreeWalker.Action.CONTINUE; }
+
+            @Override
+            public void exit(LogicNode n, int depth) { out.add(n); }
+        });
     }
-    // 查找父节点
-    public static LogicNode findParent(LogicNode logic, DefaultMutableTreeNode swing, DefaultMutableTreeNode swingRoot) {
-        TreeNode[] path = swing.getPath();
-        if (path.length<=2) return null;
-        LogicNode cur = logic;
-        for (int i=1;i<path.length-1;i++) {
-            String label = path[i].toString();
-            Optional<LogicNode> next = cur.children.stream().filter(n->n.toString().equals(label)).findFirst();
-            if (next.isEmpty()) return null;
-            cur = next.get();
-        }
-        return cur;
+    // 路径末端的节点（树的路径分量即 LogicNode），未加载或无路径时返回 null
+    public static LogicNode findNode(TreePath path) {
+        if (path==null) return null;
+        Object last = path.getLastPathComponent();
+        return last instanceof LogicNode ? (LogicNode) last : null;
+    }
+    // 查找父节点（根及根的直接子节点返回 null）
+    public static LogicNode findParent(TreePath path) {
+        if (path==null || path.getPathCount()<=2) return null;
+        return findNode(path.getParentPath());
     }
 }
@@ -1,12 +1,5 @@
 package logic;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.TransformerFactory;
-
 import java.io.File;
 
 public class UndoManager {
@@ -18,24 +11,21 @@ public class UndoManager {
 
     // 保存当前逻辑树为临时文件
     public static void saveSnapshot(LogicNode root) {
+        // 如果根节点有注释，先写入文档注释（保留在元素之前）
+        java.util.List<String> docComments = new java.util.ArrayList<>();
+        if (root.comments != null && !root.comments.isEmpty()) {
+            StringBuilder cs = new StringBuilder();
+            for (int i=0;i<root.comments.size();i++) {
+                if (i>0) cs.append("\n");
+                cs.append(root.comments.get(i));
+            }
+            docComments.add(cs.toString());
+        }
         try {
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            DocumentBuilder db = dbf.newDocumentBuilder();
-            Document doc = db.newDocument();
-            // 如果根节点有注释，先写入文档注释（保留在元素之前）
-            if (root.comments != null && !root.comments.isEmpty()) {
-                StringBuilder cs = new StringBuilder();
-                for (int i=0;i<root.comments.size();i++) {
-                    if (i>0) cs.append("\n");
-                    cs.append(root.comments.get(i));
-                }
-                doc.appendChild(doc.createComment(cs.toString()));
+            // 流式写出，不建立 DOM
+            try (java.io.OutputStream out = new java.io.FileOutputStream(TMP_PATH)) {
+                LogicXmlUtil.writeXml(root, docComments, out);
             }
-            doc.appendChild(LogicXmlUtil.toXml(root, doc));
-            TransformerFactory tf = TransformerFactory.newInstance();
-            javax.xml.transform.Transformer t = tf.newTransformer();
-            t.setOutputProperty(javax.xml.transform.OutputKeys.INDENT, "yes");
-            t.transform(new javax.xml.transform.dom.DOMSource(doc), new javax.xml.transform.stream.StreamResult(new File(TMP_PATH)));
             undoAvailable = true;
             // notify listeners
             for (java.lang.Runnable r : listeners) {
@@ -49,13 +39,13 @@ public class UndoManager {
     /**
      * 带 UI 状态的快照：保存模型 XML（temporary.xml）并把树的展开/选中状态写入 temporary_state.json
      */
-    public static void saveSnapshot(LogicNode root, javax.swing.JTree tree, javax.swing.tree.DefaultMutableTreeNode swingRoot) {
+    public static void saveSnapshot(LogicNode root, javax.swing.JTree tree) {
         // 标记当前模型为未保存（用户已对模型做出更改）
         saved = false;
         // 先保存模型
         saveSnapshot(root);
         try {
-            java.util.List<Integer> expanded = logic.SwingTreeUtil.collectExpandedIds(tree, swingRoot);
+            java.util.List<Integer> expanded = logic.SwingTreeUtil.collectExpandedIds(tree);
             Integer sel = logic.SwingTreeUtil.findSelectedNodeId(tree);
             // 简单 JSON 写入
             StringBuilder sb = new StringBuilder();
@@ -80,12 +70,8 @@ public class UndoManager {
     public static LogicNode restoreSnapshot() throws Exception {
         File f = new File(TMP_PATH);
         if (!f.exists()) return null;
-        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-        DocumentBuilder db = dbf.newDocumentBuilder();
-        org.w3c.dom.Document doc = db.parse(f);
-        Element fe = (Element) doc.getDocumentElement();
         int[] counter = new int[]{1};
-        return LogicXmlUtil.parseXml(fe, counter);
+        return LogicXmlUtil.parseXml(f, counter);
     }
 
     /**